@@ -11,41 +11,24 @@ package uk.ac.diamond.scisoft.analysis.rcp.polling;
 
 import java.util.ArrayList;
 
-import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
-import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
-import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
-
 import uk.ac.diamond.scisoft.analysis.SDAPlotter;
-import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
 import uk.ac.diamond.sda.polling.jobs.FilenameReaderUpdateOnlyJob;
 
 public class ImagePlotAccumulatorJob extends FilenameReaderUpdateOnlyJob {
 
 	private static final Object PLOT_VIEW_NAME = "PlotViewName";
 	private static final Object MAX_IMAGES_TO_ACCUMULATE = "MaxImagesToAccumulate";
+
+	private ImageWindow window = new ImageWindow(true);
 	
 	@Override
 	protected void processFile(ArrayList<String> filenames) {
 		try {	
-			// get the end of the list
-			int listEnd = filenames.size()-1;
-
-			ArrayList<IDataset> images = new ArrayList<IDataset>();
-			
-			int position = 0;
-			while (listEnd-position >= 0 && position < Integer.parseInt(getJobParameters().get(MAX_IMAGES_TO_ACCUMULATE))) {
-				IDataHolder data = LoaderFactory.getData(filenames.get(listEnd-position));
-				images.add(data.getDataset(0));
-				position++;
-			}			
-				
-			Dataset accumulator =  DatasetFactory.zeros((Dataset) images.get(0), Dataset.ARRAYFLOAT64);
-			for(int i = 0; i < images.size(); i++) {
-				accumulator.iadd(images.get(i));
+			// only newly listed images are loaded and added to the running sum
+			int maxImages = Integer.parseInt(getJobParameters().get(MAX_IMAGES_TO_ACCUMULATE));
+			if (window.update(filenames, maxImages) && window.size() > 0) {
+				SDAPlotter.imagePlot(getJobParameters().get(PLOT_VIEW_NAME), window.getSum());
 			}
-			
-			SDAPlotter.imagePlot(getJobParameters().get(PLOT_VIEW_NAME), accumulator);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
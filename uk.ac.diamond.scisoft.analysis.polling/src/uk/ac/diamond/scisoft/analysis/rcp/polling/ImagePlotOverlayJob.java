@@ -11,34 +11,24 @@ package uk.ac.diamond.scisoft.analysis.rcp.polling;
 
 import java.util.ArrayList;
 
-import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
-import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
-
 import uk.ac.diamond.scisoft.analysis.SDAPlotter;
-import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
 import uk.ac.diamond.sda.polling.jobs.FilenameReaderUpdateOnlyJob;
 
 public class ImagePlotOverlayJob extends FilenameReaderUpdateOnlyJob {
 
 	private static final Object PLOT_VIEW_NAME = "PlotViewName";
 	private static final Object MAX_IMAGES_TO_OVERLAY = "MaxImagesToOverlay";
+
+	private ImageWindow window = new ImageWindow(false);
 	
 	@Override
 	protected void processFile(ArrayList<String> filenames) {
 		try {	
-			// get the end of the list
-			int listEnd = filenames.size()-1;
-
-			ArrayList<IDataset> images = new ArrayList<IDataset>();
-			
-			int position = 0;
-			while (listEnd-position >= 0 && position < Integer.parseInt(getJobParameters().get(MAX_IMAGES_TO_OVERLAY))) {
-				IDataHolder data = LoaderFactory.getData(filenames.get(listEnd-position));
-				images.add(data.getDataset(0));
-				position++;
-			}			
-				
-			SDAPlotter.imagesPlot(getJobParameters().get(PLOT_VIEW_NAME), images.toArray(new IDataset[0]));
+			// only newly listed images are loaded
+			int maxImages = Integer.parseInt(getJobParameters().get(MAX_IMAGES_TO_OVERLAY));
+			if (window.update(filenames, maxImages) && window.size() > 0) {
+				SDAPlotter.imagesPlot(getJobParameters().get(PLOT_VIEW_NAME), window.getImages());
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
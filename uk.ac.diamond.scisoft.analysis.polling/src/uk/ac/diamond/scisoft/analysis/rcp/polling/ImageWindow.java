@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.polling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+
+import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
+
+/**
+ * Sliding window over the last few images in a list of files. Images stay decoded while they
+ * are in the window so when files are added only the new ones are loaded. Optionally, a running
+ * sum is kept by adding the images that enter the window and subtracting those that leave it.
+ * The sum is recomputed from the decoded images once the window has moved by its size so that
+ * rounding errors do not build up.
+ */
+class ImageWindow {
+
+	private final boolean summing;
+	private List<String> names = new ArrayList<String>();
+	private List<Dataset> images = new ArrayList<Dataset>(); // oldest first
+	private Dataset sum = null;
+	private int changes = 0;
+
+	/**
+	 * @param summing if true, keep running sum of images
+	 */
+	public ImageWindow(boolean summing) {
+		this.summing = summing;
+	}
+
+	/**
+	 * Move window to cover last files in list
+	 * @param filenames
+	 * @param size maximum number of images in window
+	 * @return true if window has changed
+	 * @throws Exception if an image could not be loaded or added to sum
+	 */
+	public boolean update(List<String> filenames, int size) throws Exception {
+		List<String> tail = filenames.subList(Math.max(0, filenames.size() - Math.max(0, size)), filenames.size());
+		if (tail.equals(names))
+			return false;
+
+		// match images already decoded by name
+		Map<String, ArrayDeque<Dataset>> decoded = new HashMap<String, ArrayDeque<Dataset>>();
+		for (int i = 0; i < names.size(); i++) {
+			ArrayDeque<Dataset> d = decoded.get(names.get(i));
+			if (d == null) {
+				d = new ArrayDeque<Dataset>();
+				decoded.put(names.get(i), d);
+			}
+			d.add(images.get(i));
+		}
+
+		List<Dataset> window = new ArrayList<Dataset>();
+		List<Dataset> entering = new ArrayList<Dataset>();
+		for (String f : tail) {
+			ArrayDeque<Dataset> d = decoded.get(f);
+			Dataset image = d == null ? null : d.poll();
+			if (image == null) {
+				image = load(f);
+				entering.add(image);
+			}
+			window.add(image);
+		}
+
+		if (summing) {
+			// images not matched are leaving the window
+			List<Dataset> leaving = new ArrayList<Dataset>();
+			for (ArrayDeque<Dataset> d : decoded.values()) {
+				leaving.addAll(d);
+			}
+			try {
+				changes += entering.size() + leaving.size();
+				if (sum == null || changes > 2 * window.size()) {
+					sum = sum(window);
+					changes = 0;
+				} else {
+					for (Dataset image : entering) {
+						sum.iadd(image);
+					}
+					for (Dataset image : leaving) {
+						sum.isub(image);
+					}
+				}
+			} catch (Exception e) {
+				// start again next time
+				sum = null;
+				names = new ArrayList<String>();
+				images = new ArrayList<Dataset>();
+				throw e;
+			}
+		}
+
+		names = new ArrayList<String>(tail);
+		images = window;
+		return true;
+	}
+
+	private static Dataset load(String filename) throws Exception {
+		return (Dataset) LoaderFactory.getData(filename).getDataset(0);
+	}
+
+	private static Dataset sum(List<Dataset> window) {
+		if (window.isEmpty())
+			return null;
+
+		Dataset total = DatasetFactory.zeros(window.get(window.size() - 1), Dataset.ARRAYFLOAT64);
+		for (Dataset image : window) {
+			total.iadd(image);
+		}
+		return total;
+	}
+
+	/**
+	 * @return number of images in window
+	 */
+	public int size() {
+		return images.size();
+	}
+
+	/**
+	 * @return images in window, newest first
+	 */
+	public IDataset[] getImages() {
+		IDataset[] result = new IDataset[images.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = images.get(images.size() - 1 - i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return copy of running sum of images in window, or null if window is empty
+	 */
+	public Dataset getSum() {
+		return sum == null ? null : sum.clone();
+	}
+}
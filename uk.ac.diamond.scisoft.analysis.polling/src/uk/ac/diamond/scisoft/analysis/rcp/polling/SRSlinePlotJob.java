@@ -10,8 +10,10 @@
 package uk.ac.diamond.scisoft.analysis.rcp.polling;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
 
 import uk.ac.diamond.scisoft.analysis.SDAPlotter;
 import uk.ac.diamond.scisoft.analysis.io.DataHolder;
@@ -22,10 +24,55 @@ public class SRSlinePlotJob extends FilenameReaderJob {
 
 	public static final String PLOT_VIEW_NAME = "PlotViewName";
 
-	private void swapItems(int a, int b, Dataset dataSet) {
-		Object temp = dataSet.getObject(a);
-		dataSet.set(dataSet.getObject(b), a);
-		dataSet.set(temp, b);
+	/**
+	 * @param values
+	 * @return indices that put values in ascending order (as {@link Double#compare(double, double)},
+	 * so NaNs go last), keeping the order of equal values, or null if they are already in order
+	 */
+	static int[] sortIndices(double[] values) {
+		int n = values.length;
+		int i = 1;
+		while (i < n && Double.compare(values[i - 1], values[i]) <= 0) {
+			i++;
+		}
+		if (i >= n) // scans usually move in one direction so this is the common case
+			return null;
+
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		// key is rank of value then index, so sorting keys gives a stable order
+		long[] keys = new long[n];
+		for (i = 0; i < n; i++) {
+			keys[i] = ((long) firstIndexOf(sorted, values[i]) << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[n];
+		for (i = 0; i < n; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	/**
+	 * @return index of first element of sorted array equal to value
+	 */
+	private static int firstIndexOf(double[] sorted, double value) {
+		int lo = 0;
+		int hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (Double.compare(sorted[mid], value) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private static Dataset reorder(Dataset data, int[] order) {
+		Dataset sorted = DatasetUtils.take(data, order, 0);
+		sorted.setName(data.getName());
+		return sorted;
 	}
 	
 	
@@ -47,26 +94,19 @@ public class SRSlinePlotJob extends FilenameReaderJob {
 				list.add(holder.getDataset(name));
 			}
 			
-			// order the data, simple sorting routine
-			boolean sorted = false;
-			while(!sorted) {
-				
-				sorted = true;
-				
-				for(int i = 0; i < xAxis.getShape()[0]-1; i++) {
-					
-					if(xAxis.getDouble(i) > xAxis.getDouble(i+1)) {
-						sorted = false;
-						
-						swapItems(i, i+1, xAxis);
-						for (Dataset abstractDataset : list) {
-							swapItems(i, i+1, abstractDataset);
-						}						
-					}					
+			// order the data by x in one pass over each dataset
+			double[] x = new double[xAxis.getShape()[0]];
+			for (int i = 0; i < x.length; i++) {
+				x[i] = xAxis.getDouble(i);
+			}
+			int[] order = sortIndices(x);
+			if (order != null) {
+				xAxis = reorder(xAxis, order);
+				for (int i = 0; i < list.size(); i++) {
+					list.set(i, reorder(list.get(i), order));
 				}
 			}
 			
-			
 			// plot the results
 			SDAPlotter.plot(getJobParameters().get(PLOT_VIEW_NAME),
 					xAxis,list.toArray(new Dataset[0]));			
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.editors;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.junit.Test;
+import org.nfunk.jep.JEP;
+import org.nfunk.jep.type.Complex;
+
+/**
+ * Compares compiled expressions with JEP evaluating the same expressions one value at a time
+ */
+public class ExpressionPlanTest {
+
+	// no values of +/-1 where inverse hyperbolic functions are infinite
+	private static final double[] X = {-2.5, -0.5, 0.25, 0.5, 2, 3.7, Double.NaN};
+	private static final double[] Y = {-3, -0.5, 0, 0.5, 2, Double.NaN};
+
+	private static final String[] ARITHMETIC = {"x+y", "x-y*2", "x/y", "x%y", "x^2", "x^y", "-x",
+		"(x+1)*(y-1)/2", "atan2(x,y)", "sin(x)+cos(y)", "tan(x)", "asin(x)", "acos(x)", "atan(x)",
+		"sinh(x)", "cosh(x)", "tanh(x)", "asinh(x)", "acosh(x)", "atanh(x)", "ln(x)", "log(x)",
+		"exp(x)", "sqrt(x)", "abs(x)"};
+
+	private static final String[] COMPARISONS = {"x<y", "x>y", "x<=y", "x>=y", "x==y", "x!=y", "(x<y)*x"};
+
+	@Test
+	public void testArithmeticAndFunctions() {
+		for (String expression : ARITHMETIC) {
+			check(expression, X, Y);
+		}
+	}
+
+	/**
+	 * Comparisons are only checked for numbers as JEP and Java need not agree on whether
+	 * NaN equals NaN
+	 */
+	@Test
+	public void testComparisons() {
+		double[] x = {-2.5, -0.5, 0, 0.5, 2};
+		double[] y = {-0.5, 0, 0.5, 2, 3};
+		for (String expression : COMPARISONS) {
+			check(expression, x, y);
+		}
+	}
+
+	@Test
+	public void testUnsupported() {
+		JEP jep = createJEP("rand()+x");
+		assertNull("Function without arguments should be left to JEP", ExpressionPlan.compile(jep.getTopNode()));
+	}
+
+	private static JEP createJEP(String expression) {
+		// set up as in the compare files editor
+		JEP jep = new JEP();
+		jep.setAllowUndeclared(true);
+		jep.addStandardFunctions();
+		jep.parseExpression(expression);
+		assertFalse("Could not parse " + expression + ": " + jep.getErrorInfo(), jep.hasError());
+		return jep;
+	}
+
+	/**
+	 * Evaluate expression on every pair of values from x and y and compare with JEP
+	 */
+	private static void check(String expression, double[] x, double[] y) {
+		JEP jep = createJEP(expression);
+		ExpressionPlan plan = ExpressionPlan.compile(jep.getTopNode());
+		assertNotNull("Could not compile " + expression, plan);
+
+		double[] xs = new double[x.length * y.length];
+		double[] ys = new double[xs.length];
+		for (int i = 0; i < x.length; i++) {
+			for (int j = 0; j < y.length; j++) {
+				xs[i * y.length + j] = x[i];
+				ys[i * y.length + j] = y[j];
+			}
+		}
+		Map<String, DoubleDataset> values = new HashMap<String, DoubleDataset>();
+		values.put("x", new DoubleDataset(xs, x.length, y.length));
+		values.put("y", new DoubleDataset(ys, x.length, y.length));
+		Dataset result = plan.evaluate(values, new int[] {x.length, y.length});
+
+		for (int i = 0; i < x.length; i++) {
+			for (int j = 0; j < y.length; j++) {
+				if (jep.getSymbolTable().containsKey("x"))
+					jep.getSymbolTable().setVarValue("x", x[i]);
+				if (jep.getSymbolTable().containsKey("y"))
+					jep.getSymbolTable().setVarValue("y", y[j]);
+				double expected = getJEPValue(jep);
+				double actual = result.getDouble(i, j);
+				if (!isClose(expected, actual)) {
+					fail(expression + " for x = " + x[i] + ", y = " + y[j] + " should be " + expected + " but was "
+							+ actual);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return value from JEP, or NaN where JEP gives a complex number that is not real
+	 */
+	private static double getJEPValue(JEP jep) {
+		Object value = jep.getValueAsObject();
+		if (value instanceof Complex) {
+			Complex c = (Complex) value;
+			return Math.abs(c.im()) <= 1e-12 * Math.max(1, Math.abs(c.re())) ? c.re() : Double.NaN;
+		}
+		return jep.getValue();
+	}
+
+	private static boolean isClose(double expected, double actual) {
+		if (Double.isNaN(expected) || Double.isNaN(actual)) {
+			return Double.isNaN(expected) && Double.isNaN(actual);
+		}
+		if (Double.isInfinite(expected) || Double.isInfinite(actual)) {
+			return expected == actual;
+		}
+		return Math.abs(expected - actual) <= 1e-12 * Math.max(1, Math.abs(expected));
+	}
+}
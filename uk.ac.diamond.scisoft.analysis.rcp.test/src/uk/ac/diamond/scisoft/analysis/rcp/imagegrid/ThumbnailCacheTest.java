@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.imagegrid;
+
+import java.io.File;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThumbnailCacheTest {
+
+	private File dir;
+	private File image;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("thumbcache", "");
+		dir.delete();
+		dir.mkdirs();
+		image = File.createTempFile("image", ".tif");
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files)
+				f.delete();
+		}
+		dir.delete();
+		image.delete();
+	}
+
+	private static ImageData createImageData() {
+		return new ImageData(16, 16, 24, new PaletteData(0xff0000, 0xff00, 0xff));
+	}
+
+	@Test
+	public void testKey() {
+		String key = ThumbnailCache.createKey(image.getAbsolutePath(), "Gray Scale", 0, 0.98);
+		Assert.assertNotNull(key);
+		Assert.assertEquals(key, ThumbnailCache.createKey(image.getAbsolutePath(), "Gray Scale", 0, 0.98));
+		Assert.assertFalse(key.equals(ThumbnailCache.createKey(image.getAbsolutePath(), "Jet", 0, 0.98)));
+		Assert.assertFalse(key.equals(ThumbnailCache.createKey(image.getAbsolutePath(), "Gray Scale", 0.01, 0.98)));
+		Assert.assertNull(ThumbnailCache.createKey(new File(dir, "missing.tif").getAbsolutePath(), "Gray Scale", 0, 0.98));
+	}
+
+	@Test
+	public void testStoreAndReload() {
+		ThumbnailCache cache = new ThumbnailCache(dir, 1024 * 1024);
+		String key = ThumbnailCache.createKey(image.getAbsolutePath(), "Gray Scale", 0, 0.98);
+		Assert.assertNull(cache.get(key));
+		File f = cache.put(key, createImageData());
+		Assert.assertNotNull(f);
+		Assert.assertEquals(f, cache.get(key));
+
+		// new instance picks up thumbnails stored earlier
+		cache = new ThumbnailCache(dir, 1024 * 1024);
+		Assert.assertEquals(f, cache.get(key));
+	}
+
+	@Test
+	public void testEviction() {
+		ThumbnailCache cache = new ThumbnailCache(dir, 1024 * 1024);
+		File a = cache.put("a", createImageData());
+		File b = cache.put("b", createImageData());
+		Assert.assertNotNull(cache.get("a")); // make b least recently used
+
+		cache.setMaximumSize(a.length());
+		Assert.assertNull(cache.get("b"));
+		Assert.assertFalse(b.exists());
+		Assert.assertEquals(a, cache.get("a"));
+	}
+
+	@Test
+	public void testUseOnlyTouchesOldFiles() {
+		ThumbnailCache cache = new ThumbnailCache(dir, 1024 * 1024);
+		File f = cache.put("a", createImageData());
+		long recent = System.currentTimeMillis() - 60000;
+		Assert.assertTrue(f.setLastModified(recent));
+		cache.get("a");
+		Assert.assertEquals(recent, f.lastModified(), 1000);
+
+		long old = System.currentTimeMillis() - 2 * ThumbnailCache.TOUCH_INTERVAL;
+		Assert.assertTrue(f.setLastModified(old));
+		cache.get("a");
+		Assert.assertTrue(f.lastModified() > old + ThumbnailCache.TOUCH_INTERVAL);
+	}
+}
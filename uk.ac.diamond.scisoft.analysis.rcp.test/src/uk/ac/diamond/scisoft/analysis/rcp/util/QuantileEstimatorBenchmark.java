@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.util;
+
+import java.util.Arrays;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Stats;
+
+/**
+ * Compares the time taken by estimated and exact quantiles of a 16 megapixel frame.
+ * This is run by hand and is not part of the test suite as it needs a large heap
+ * (run with -Xmx1g or more) and its timings depend on the machine.
+ */
+public class QuantileEstimatorBenchmark {
+
+	private static final int SIZE = 4096;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) {
+		final double[] pixels = QuantileEstimatorTest.createPixels(SIZE);
+		final DoubleDataset frame = new DoubleDataset(pixels, SIZE, SIZE);
+		final QuantileEstimator estimator = new QuantileEstimator();
+
+		double[] approx = null;
+		double[] exact = null;
+		long approxTime = Long.MAX_VALUE;
+		long exactTime = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			approx = estimator.quantile(frame, 0.02, 0.98);
+			approxTime = Math.min(approxTime, System.nanoTime() - start);
+
+			// fresh dataset each run so nothing is reused from the previous exact run
+			DoubleDataset copy = new DoubleDataset(pixels.clone(), SIZE, SIZE);
+			start = System.nanoTime();
+			exact = Stats.quantile(copy, 0.02, 0.98);
+			exactTime = Math.min(exactTime, System.nanoTime() - start);
+		}
+
+		System.out.printf("Quantiles of %dx%d frame, best of %d runs%n", SIZE, SIZE, RUNS);
+		System.out.printf("  exact    %s in %.1f ms%n", Arrays.toString(exact), exactTime * 1e-6);
+		System.out.printf("  estimate %s in %.1f ms (%.1fx faster)%n", Arrays.toString(approx), approxTime * 1e-6,
+				(double) exactTime / approxTime);
+	}
+}
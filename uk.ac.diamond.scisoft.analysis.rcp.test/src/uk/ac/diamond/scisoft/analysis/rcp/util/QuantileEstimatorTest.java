@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Stats;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks accuracy of estimates against exact quantiles of a megapixel frame
+ */
+public class QuantileEstimatorTest {
+
+	private static final int SIZE = 1024;
+	private static final double[] QUANTILES = {0.01, 0.5, 0.98, 0.999};
+
+	private static double[] sorted;
+	private static DoubleDataset frame;
+
+	/**
+	 * @return detector-like frame of skewed background with hot pixels and dead module gaps
+	 */
+	static double[] createPixels(int size) {
+		Random r = new Random(12345);
+		double[] buffer = new double[size * size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				double v;
+				if (x % 487 < 7)
+					v = 0;
+				else if (r.nextDouble() < 1e-3)
+					v = 65535;
+				else
+					v = 100 * -Math.log(1 - r.nextDouble());
+				buffer[x + y * size] = v;
+			}
+		}
+		return buffer;
+	}
+
+	@BeforeClass
+	public static void createFrame() {
+		double[] buffer = createPixels(SIZE);
+		frame = new DoubleDataset(buffer, SIZE, SIZE);
+		sorted = buffer.clone();
+		Arrays.sort(sorted);
+	}
+
+	private static double rankOf(double v) {
+		int lo = Arrays.binarySearch(sorted, Math.nextAfter(v, Double.NEGATIVE_INFINITY));
+		int hi = Arrays.binarySearch(sorted, Math.nextUp(v));
+		lo = lo < 0 ? -lo - 1 : lo;
+		hi = hi < 0 ? -hi - 1 : hi;
+		return 0.5 * (lo + hi) / sorted.length;
+	}
+
+	@Test
+	public void testAccuracy() {
+		for (double error : new double[] {0.01, 0.005, 0.001}) {
+			QuantileEstimator estimator = new QuantileEstimator(error);
+			double[] values = estimator.quantile(frame, QUANTILES);
+			for (int i = 0; i < QUANTILES.length; i++) {
+				double rank = rankOf(values[i]);
+				double lo = sorted[(int) Math.max(0, Math.floor((QUANTILES[i] - error) * (sorted.length - 1)))];
+				double hi = sorted[(int) Math.min(sorted.length - 1, Math.ceil((QUANTILES[i] + error) * (sorted.length - 1)))];
+				Assert.assertTrue("Quantile " + QUANTILES[i] + " has rank " + rank + " for error " + error,
+						values[i] >= lo && values[i] <= hi);
+			}
+		}
+	}
+
+	@Test
+	public void testExact() {
+		QuantileEstimator estimator = new QuantileEstimator(0);
+		Random r = new Random(54321);
+		double[] small = new double[1000];
+		for (int i = 0; i < small.length; i++)
+			small[i] = 100 * -Math.log(1 - r.nextDouble());
+		DoubleDataset ds = new DoubleDataset(small, 10, 100);
+		double[] values = estimator.quantile(ds, 0.1, 0.9);
+		Assert.assertEquals(Stats.quantile(ds, 0.1), values[0], 1e-12);
+		Assert.assertEquals(Stats.quantile(ds, 0.9), values[1], 1e-12);
+	}
+}
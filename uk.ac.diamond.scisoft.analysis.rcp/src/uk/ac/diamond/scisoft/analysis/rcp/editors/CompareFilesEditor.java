@@ -11,6 +11,7 @@ package uk.ac.diamond.scisoft.analysis.rcp.editors;
 
 import java.io.File;
 import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,6 +24,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.math3.util.MultidimensionalCounter;
 import org.eclipse.core.resources.IFile;
@@ -51,6 +56,7 @@ import org.eclipse.dawnsci.analysis.dataset.impl.IndexIterator;
 import org.eclipse.dawnsci.analysis.dataset.impl.IntegerDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.LazyDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.Maths;
+import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.CellEditor;
@@ -114,6 +120,7 @@ import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.analysis.axis.AxisChoice;
 import uk.ac.diamond.scisoft.analysis.io.AbstractFileLoader;
+import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
 import uk.ac.diamond.scisoft.analysis.io.Utils;
 import uk.ac.diamond.scisoft.analysis.rcp.AnalysisRCPActivator;
 import uk.ac.diamond.scisoft.analysis.rcp.explorers.AbstractExplorer;
@@ -145,6 +152,11 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 
 	private static final Logger logger = LoggerFactory.getLogger(CompareFilesEditor.class);
 
+	/**
+	 * Number of files loaded at once
+	 */
+	private static final int LOADERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
 	public final static String ID = "uk.ac.diamond.scisoft.analysis.rcp.editors.CompareFilesEditor";
 	private SashForm sashComp;
 	private List<SelectedFile> fileList;
@@ -515,13 +527,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 		public FileSelection(SelectedFile f) {
 			super(f.f);
 			if (!f.hasDataHolder()) {
-				try {
-					IDataHolder holder = explorer.loadFile(f.getAbsolutePath(), null);
-					if (holder != null) {
-						f.setDataHolder(holder);
-					}
-				} catch (Exception e) {
-				}
+				loadFile(f, false);
 			}
 			if (f.hasMetadata()) {
 				metadata = f.m;
@@ -1241,15 +1247,18 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 	private void loadMetaValues(String key) {
 		logger.debug("Selected metadata = {}", key);
 
+		loadFiles(fileList, true);
+		List<SelectedFile> missing = new ArrayList<SelectedFile>();
 		for (SelectedFile f : fileList) {
-			if (!f.hasMetadata() && !f.hasDataHolder()) {
-				try {
-					IDataHolder holder = explorer.loadFile(f.getAbsolutePath(), null);
-					f.setDataHolder(holder);
-				} catch (Exception e) {
-					continue;
-				}
+			f.setMetadataValue(key);
+			if (!f.hasMetadataValue() && !f.hasDataHolder()) {
+				missing.add(f);
 			}
+		}
+
+		// value may be a dataset rather than in the metadata
+		loadFiles(missing, false);
+		for (SelectedFile f : missing) {
 			f.setMetadataValue(key);
 		}
 	}
@@ -1258,19 +1267,95 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 	 * Load datasets from selected files
 	 */
 	private void loadDatasets(String key) {
+		loadFiles(fileList, false);
 		for (SelectedFile f : fileList) {
-			if (!f.hasDataHolder()) {
-				try {
-					IDataHolder holder = explorer.loadFile(f.getAbsolutePath(), null);
-					if (holder == null) {
-						continue;
+			if (f.hasDataHolder()) {
+				f.setDataset(key);
+			}
+		}
+	}
+
+	/**
+	 * Load files that are not loaded yet, several at a time, showing progress
+	 * if it takes a while
+	 * @param files
+	 * @param metadataOnly if true, only read metadata
+	 */
+	private void loadFiles(List<SelectedFile> files, final boolean metadataOnly) {
+		final List<SelectedFile> toLoad = new ArrayList<SelectedFile>();
+		for (SelectedFile f : files) {
+			if (!f.hasDataHolder() && !(metadataOnly && f.hasMetadata())) {
+				toLoad.add(f);
+			}
+		}
+		if (toLoad.isEmpty()) {
+			return;
+		}
+		if (toLoad.size() == 1) {
+			loadFile(toLoad.get(0), metadataOnly);
+			return;
+		}
+
+		try {
+			PlatformUI.getWorkbench().getProgressService().busyCursorWhile(new IRunnableWithProgress() {
+				@Override
+				public void run(final IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+					monitor.beginTask(metadataOnly ? "Reading metadata" : "Loading files", toLoad.size());
+					ExecutorService loaders = Executors.newFixedThreadPool(Math.min(LOADERS, toLoad.size()));
+					try {
+						List<Future<?>> results = new ArrayList<Future<?>>();
+						for (final SelectedFile f : toLoad) {
+							results.add(loaders.submit(new Runnable() {
+								@Override
+								public void run() {
+									if (!monitor.isCanceled()) {
+										loadFile(f, metadataOnly);
+									}
+								}
+							}));
+						}
+						for (Future<?> r : results) {
+							try {
+								r.get();
+							} catch (ExecutionException e) {
+								logger.warn("Problem loading file", e.getCause());
+							}
+							monitor.worked(1);
+							if (monitor.isCanceled()) {
+								break;
+							}
+						}
+					} finally {
+						loaders.shutdownNow();
+						monitor.done();
 					}
-					f.setDataHolder(holder);
-				} catch (Exception e) {
-					continue;
+				}
+			});
+		} catch (InvocationTargetException e) {
+			logger.error("Problem loading files", e.getCause());
+		} catch (InterruptedException e) {
+			logger.debug("Loading files cancelled");
+		}
+	}
+
+	/**
+	 * Load file, or only its metadata if that can be read on its own
+	 */
+	private void loadFile(SelectedFile f, boolean metadataOnly) {
+		try {
+			if (metadataOnly) {
+				IMetadata meta = LoaderFactory.getMetadata(f.getAbsolutePath(), null);
+				if (meta != null) {
+					f.setMetadata(meta);
+					return;
 				}
 			}
-			f.setDataset(key);
+			IDataHolder holder = explorer.loadFile(f.getAbsolutePath(), null);
+			if (holder != null) {
+				f.setDataHolder(holder);
+			}
+		} catch (Exception e) {
+			logger.debug("Cannot load {}", f.getAbsolutePath(), e);
 		}
 	}
 
@@ -1698,9 +1783,9 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 			return h != null;
 		}
 
-//		public void setMetadata(IMetadata metadata) {
-//			m = metadata;
-//		}
+		public void setMetadata(IMetadata metadata) {
+			m = metadata;
+		}
 
 		public void setDataHolder(IDataHolder holder) {
 			h = holder;
@@ -1768,6 +1853,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 		
 		private SymbolTable symbolTable;
 		private JEP jepParser, eval;
+		private ExpressionPlan plan; // null when expression has to be interpreted
 		
 		public SelectedNode(int index, String str) {
 			resetJep();
@@ -1866,6 +1952,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 			resetJep();
 			jepParser.parseExpression(str);
 			eval.parseExpression(str);
+			plan = eval.hasError() ? null : ExpressionPlan.compile(eval.getTopNode());
 			symbolTable = jepParser.getSymbolTable();
 			f = str;
 		}
@@ -1882,6 +1969,7 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 			eval.setAllowUndeclared(true);
 			//eval.addStandardConstants();
 			eval.addStandardFunctions();
+			plan = null;
 		}
 		
 		private class VariableLazyLoader implements ILazyLoader {
@@ -1916,6 +2004,10 @@ public class CompareFilesEditor extends EditorPart implements ISelectionChangedL
 					}
 				}
 				
+				if (plan != null) {
+					return plan.evaluate(dataSlices, sliceShape);
+				}
+
 				Dataset ds = DatasetFactory.zeros(sliceShape, Dataset.FLOAT64); 
 				IndexIterator iter = ds.getIterator(true);
 				int[] idx = iter.getPos();
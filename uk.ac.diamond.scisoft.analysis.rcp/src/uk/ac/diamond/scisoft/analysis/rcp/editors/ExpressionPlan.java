@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.editors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.IndexIterator;
+import org.nfunk.jep.ASTConstant;
+import org.nfunk.jep.ASTFunNode;
+import org.nfunk.jep.ASTVarNode;
+import org.nfunk.jep.Node;
+
+/**
+ * A JEP expression compiled into operations on whole arrays.
+ * <p>
+ * The parse tree is turned into a tree of terms once. Each term works on a block of
+ * elements at a time and blocks are shared between threads, so there is no per element
+ * symbol table lookup or boxing. Only arithmetic, comparisons and the standard single
+ * valued functions are compiled; {@link #compile(Node)} returns null for anything else
+ * so the expression can still be interpreted by JEP.
+ */
+class ExpressionPlan {
+
+	private static final int BLOCK = 4096;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private final Term root;
+	private final List<String> variables;
+
+	private ExpressionPlan(Term root, List<String> variables) {
+		this.root = root;
+		this.variables = variables;
+	}
+
+	/**
+	 * @param node top node of parsed expression
+	 * @return plan or null if expression uses something that is not supported
+	 */
+	static ExpressionPlan compile(Node node) {
+		if (node == null) return null;
+		final List<String> variables = new ArrayList<String>();
+		final Term root = compile(node, variables);
+		return root == null ? null : new ExpressionPlan(root, variables);
+	}
+
+	/**
+	 * Evaluate expression over datasets of the same shape
+	 * @param values datasets by variable name
+	 * @param shape
+	 * @return result
+	 */
+	Dataset evaluate(Map<String, ? extends IDataset> values, int[] shape) {
+		final double[][] vars = new double[variables.size()][];
+		for (int i = 0; i < vars.length; i++) {
+			vars[i] = toDoubles(DatasetUtils.convertToDataset(values.get(variables.get(i))));
+		}
+		int size = 1;
+		for (int s : shape) size *= s;
+
+		final double[] out = new double[size];
+		pool.invoke(new BlockAction(vars, out, 0, size));
+		return new DoubleDataset(out, shape);
+	}
+
+	private static double[] toDoubles(Dataset data) {
+		final double[] values = new double[data.getSize()];
+		final IndexIterator it = data.getIterator();
+		int i = 0;
+		while (it.hasNext()) {
+			values[i++] = data.getElementDoubleAbs(it.index);
+		}
+		return values;
+	}
+
+	private class BlockAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] vars;
+		private final double[] out;
+		private final int from;
+		private final int to;
+
+		BlockAction(double[][] vars, double[] out, int from, int to) {
+			this.vars = vars;
+			this.out  = out;
+			this.from = from;
+			this.to   = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BLOCK) {
+				final int mid = from + Math.max(1, (to - from) / BLOCK / 2) * BLOCK;
+				invokeAll(new BlockAction(vars, out, from, mid), new BlockAction(vars, out, mid, to));
+				return;
+			}
+			final double[] block = new double[to - from];
+			root.eval(vars, from, block);
+			System.arraycopy(block, 0, out, from, block.length);
+		}
+	}
+
+	private static Term compile(Node node, List<String> variables) {
+		if (node instanceof ASTConstant) {
+			final Object value = ((ASTConstant) node).getValue();
+			return value instanceof Number ? new Constant(((Number) value).doubleValue()) : null;
+		}
+		if (node instanceof ASTVarNode) {
+			final String name = ((ASTVarNode) node).getName();
+			int index = variables.indexOf(name);
+			if (index < 0) {
+				index = variables.size();
+				variables.add(name);
+			}
+			return new Variable(index);
+		}
+		if (!(node instanceof ASTFunNode)) return null;
+
+		final String name = ((ASTFunNode) node).getName();
+		final Term[] args = new Term[node.jjtGetNumChildren()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = compile(node.jjtGetChild(i), variables);
+			if (args[i] == null) return null;
+		}
+		if (args.length == 1) {
+			final int op = indexOf(UNARY, name);
+			return op < 0 ? null : new Unary(op, args[0]);
+		}
+		if (args.length == 2) {
+			final int op = indexOf(BINARY, name);
+			return op < 0 ? null : new Binary(op, args[0], args[1]);
+		}
+		return null;
+	}
+
+	private static int indexOf(String[] names, String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	private static abstract class Term {
+		/**
+		 * Evaluate for elements from given index, filling output
+		 */
+		abstract void eval(double[][] vars, int from, double[] out);
+	}
+
+	private static class Constant extends Term {
+		private final double value;
+
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		void eval(double[][] vars, int from, double[] out) {
+			for (int i = 0; i < out.length; i++) out[i] = value;
+		}
+	}
+
+	private static class Variable extends Term {
+		private final int index;
+
+		Variable(int index) {
+			this.index = index;
+		}
+
+		@Override
+		void eval(double[][] vars, int from, double[] out) {
+			System.arraycopy(vars[index], from, out, 0, out.length);
+		}
+	}
+
+	private static final String[] UNARY = {"UMinus", "sin", "cos", "tan", "asin", "acos", "atan",
+		"sinh", "cosh", "tanh", "asinh", "acosh", "atanh", "ln", "log", "exp", "sqrt", "abs"};
+
+	private static class Unary extends Term {
+		private final int op;
+		private final Term arg;
+
+		Unary(int op, Term arg) {
+			this.op  = op;
+			this.arg = arg;
+		}
+
+		@Override
+		void eval(double[][] vars, int from, double[] out) {
+			arg.eval(vars, from, out);
+			final int n = out.length;
+			switch (op) {
+			case 0:  for (int i = 0; i < n; i++) out[i] = -out[i]; break;
+			case 1:  for (int i = 0; i < n; i++) out[i] = Math.sin(out[i]); break;
+			case 2:  for (int i = 0; i < n; i++) out[i] = Math.cos(out[i]); break;
+			case 3:  for (int i = 0; i < n; i++) out[i] = Math.tan(out[i]); break;
+			case 4:  for (int i = 0; i < n; i++) out[i] = Math.asin(out[i]); break;
+			case 5:  for (int i = 0; i < n; i++) out[i] = Math.acos(out[i]); break;
+			case 6:  for (int i = 0; i < n; i++) out[i] = Math.atan(out[i]); break;
+			case 7:  for (int i = 0; i < n; i++) out[i] = Math.sinh(out[i]); break;
+			case 8:  for (int i = 0; i < n; i++) out[i] = Math.cosh(out[i]); break;
+			case 9:  for (int i = 0; i < n; i++) out[i] = Math.tanh(out[i]); break;
+			case 10: for (int i = 0; i < n; i++) out[i] = Math.log(out[i] + Math.sqrt(out[i]*out[i] + 1)); break;
+			case 11: for (int i = 0; i < n; i++) out[i] = Math.log(out[i] + Math.sqrt(out[i]*out[i] - 1)); break;
+			case 12: for (int i = 0; i < n; i++) out[i] = 0.5*Math.log((1 + out[i])/(1 - out[i])); break;
+			case 13: for (int i = 0; i < n; i++) out[i] = Math.log(out[i]); break;
+			case 14: for (int i = 0; i < n; i++) out[i] = Math.log10(out[i]); break;
+			case 15: for (int i = 0; i < n; i++) out[i] = Math.exp(out[i]); break;
+			case 16: for (int i = 0; i < n; i++) out[i] = Math.sqrt(out[i]); break;
+			case 17: for (int i = 0; i < n; i++) out[i] = Math.abs(out[i]); break;
+			default: throw new IllegalStateException("Unknown function");
+			}
+		}
+	}
+
+	private static final String[] BINARY = {"+", "-", "*", "/", "%", "^", "atan2",
+		"<", ">", "<=", ">=", "==", "!="};
+
+	private static class Binary extends Term {
+		private final int op;
+		private final Term left;
+		private final Term right;
+
+		Binary(int op, Term left, Term right) {
+			this.op    = op;
+			this.left  = left;
+			this.right = right;
+		}
+
+		@Override
+		void eval(double[][] vars, int from, double[] out) {
+			left.eval(vars, from, out);
+			final int n = out.length;
+			final double[] b = new double[n];
+			right.eval(vars, from, b);
+			switch (op) {
+			case 0:  for (int i = 0; i < n; i++) out[i] += b[i]; break;
+			case 1:  for (int i = 0; i < n; i++) out[i] -= b[i]; break;
+			case 2:  for (int i = 0; i < n; i++) out[i] *= b[i]; break;
+			case 3:  for (int i = 0; i < n; i++) out[i] /= b[i]; break;
+			case 4:  for (int i = 0; i < n; i++) out[i] %= b[i]; break;
+			case 5:  for (int i = 0; i < n; i++) out[i] = Math.pow(out[i], b[i]); break;
+			case 6:  for (int i = 0; i < n; i++) out[i] = Math.atan2(out[i], b[i]); break;
+			case 7:  for (int i = 0; i < n; i++) out[i] = out[i] <  b[i] ? 1 : 0; break;
+			case 8:  for (int i = 0; i < n; i++) out[i] = out[i] >  b[i] ? 1 : 0; break;
+			case 9:  for (int i = 0; i < n; i++) out[i] = out[i] <= b[i] ? 1 : 0; break;
+			case 10: for (int i = 0; i < n; i++) out[i] = out[i] >= b[i] ? 1 : 0; break;
+			case 11: for (int i = 0; i < n; i++) out[i] = out[i] == b[i] ? 1 : 0; break;
+			case 12: for (int i = 0; i < n; i++) out[i] = out[i] != b[i] ? 1 : 0; break;
+			default: throw new IllegalStateException("Unknown operator");
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.explorers;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.dawnsci.analysis.api.dataset.SliceND;
+import org.eclipse.dawnsci.analysis.api.io.ILazyLoader;
+import org.eclipse.dawnsci.analysis.api.io.ScanFileHolderException;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetFactory;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+
+import uk.ac.diamond.scisoft.analysis.io.LoaderFactory;
+
+/**
+ * Loads slices of a stack of image files, one image per position of the first dimension.
+ * <p>
+ * The images a slice needs are decoded in parallel, and decoded images are kept up to a
+ * number of bytes so slicing across the stack again (a pixel's time series, or an average)
+ * does not decode every file again. Least recently used images are dropped first. The
+ * images are kept in one cache shared by all loaders, so the budget holds however many
+ * stacks are open and stacks with files in common share their images. Images are found
+ * by file path, modification time and length so a rewritten file is decoded again.
+ */
+class CachedImageStackLoader implements ILazyLoader {
+
+	private static final long MAXIMUM_BYTES = Math.min(512L << 20, Runtime.getRuntime().maxMemory() / 4);
+
+	private static final int DECODERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private static final ExecutorService decoders = Executors.newFixedThreadPool(DECODERS, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Image stack decoder");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final Object lock = new Object();
+	private static final Map<String, Dataset> frames = new LinkedHashMap<>(64, 0.75f, true);
+	private static final Map<String, Future<Dataset>> pending = new HashMap<>();
+	private static long bytes = 0;
+
+	private final List<String> files;
+	private final int dtype;
+	private final int[] shape;
+
+	/**
+	 * @param files
+	 *            image files in stack order
+	 * @param dtype
+	 *            dataset type of stack
+	 * @param shape
+	 *            shape of stack
+	 */
+	CachedImageStackLoader(List<String> files, int dtype, int[] shape) {
+		this.files = files;
+		this.dtype = dtype;
+		this.shape = shape;
+	}
+
+	@Override
+	public boolean isFileReadable() {
+		return true;
+	}
+
+	@Override
+	public Dataset getDataset(IMonitor mon, SliceND slice) throws ScanFileHolderException {
+		final int[] start = slice.getStart();
+		final int[] stop = slice.getStop();
+		final int[] step = slice.getStep();
+		final int[] outShape = slice.getShape();
+		final int n = outShape[0];
+
+		final int[] indexes = new int[n];
+		@SuppressWarnings("unchecked")
+		final Future<Dataset>[] futures = new Future[n];
+		final Dataset[] images = new Dataset[n];
+		final String[] keys = new String[n];
+		for (int i = 0; i < n; i++) {
+			final int index = start[0] + i * step[0];
+			indexes[i] = index;
+			keys[i] = getKey(files.get(index));
+		}
+		synchronized (lock) {
+			for (int i = 0; i < n; i++) {
+				images[i] = frames.get(keys[i]);
+				if (images[i] == null) {
+					futures[i] = decode(keys[i], files.get(indexes[i]));
+				}
+			}
+		}
+
+		final Dataset result = DatasetFactory.zeros(outShape, dtype);
+		final int rank = shape.length;
+		final int[] frameStart = Arrays.copyOfRange(start, 1, rank);
+		final int[] frameStop = Arrays.copyOfRange(stop, 1, rank);
+		final int[] frameStep = Arrays.copyOfRange(step, 1, rank);
+		final int[] partShape = outShape.clone();
+		partShape[0] = 1;
+		final int[] partStart = new int[rank];
+		final int[] partStop = outShape.clone();
+		// decodes are left to finish if cancelled as other slices may be waiting on them
+		for (int i = 0; i < n; i++) {
+			Dataset image = images[i];
+			if (image == null) {
+				image = waitFor(futures[i], indexes[i], mon);
+			}
+			Dataset part = image.getSlice(frameStart, frameStop, frameStep);
+			if (part.getDtype() != dtype) {
+				part = DatasetUtils.cast(part, dtype);
+			}
+			part.setShape(partShape);
+			partStart[0] = i;
+			partStop[0] = i + 1;
+			result.setSlice(part, partStart, partStop, null);
+		}
+		return result;
+	}
+
+	/**
+	 * @return key of file's image in cache, which changes when the file is rewritten
+	 */
+	private static String getKey(String path) {
+		final File file = new File(path);
+		return path + File.pathSeparator + file.lastModified() + File.pathSeparator + file.length();
+	}
+
+	/**
+	 * Start decoding image unless it is already being decoded. Images are kept in the type
+	 * they are stored in as loaders of different types may share them
+	 */
+	private static Future<Dataset> decode(final String key, final String path) {
+		Future<Dataset> future = pending.get(key);
+		if (future == null) {
+			future = decoders.submit(new Callable<Dataset>() {
+				@Override
+				public Dataset call() throws Exception {
+					try {
+						Dataset image = DatasetUtils.convertToDataset(LoaderFactory.getData(path, false, false, false, null).getDataset(0));
+						put(key, image);
+						return image;
+					} finally {
+						synchronized (lock) {
+							pending.remove(key);
+						}
+					}
+				}
+			});
+			pending.put(key, future);
+		}
+		return future;
+	}
+
+	private Dataset waitFor(Future<Dataset> future, int index, IMonitor mon) throws ScanFileHolderException {
+		try {
+			while (true) {
+				if (mon != null && mon.isCancelled()) {
+					throw new ScanFileHolderException("Loading of image stack cancelled");
+				}
+				try {
+					return future.get(100, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// check monitor again
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ScanFileHolderException("Loading of image stack interrupted", e);
+		} catch (ExecutionException e) {
+			throw new ScanFileHolderException("Could not load image " + files.get(index), e.getCause());
+		}
+	}
+
+	private static void put(String key, Dataset image) {
+		synchronized (lock) {
+			final Dataset old = frames.put(key, image);
+			if (old != null) {
+				bytes -= old.getNbytes();
+			}
+			bytes += image.getNbytes();
+			final Iterator<Dataset> it = frames.values().iterator();
+			while (bytes > MAXIMUM_BYTES && frames.size() > 1) {
+				bytes -= it.next().getNbytes();
+				it.remove();
+			}
+		}
+	}
+}
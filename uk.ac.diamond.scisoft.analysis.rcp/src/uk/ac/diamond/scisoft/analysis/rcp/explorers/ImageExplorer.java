@@ -303,7 +303,8 @@ public class ImageExplorer extends AbstractExplorer implements ISelectionProvide
 		if (imageFilenames.size() > 1) {
  		    Collections.sort(imageFilenames, new SortNatural<String>(true));
 			ImageStackLoader loader = new ImageStackLoader(imageFilenames , mon);
-			LazyDataset lazyDataset = new LazyDataset(FOLDER_STACK, loader.getDtype(), loader.getShape(), loader);
+			CachedImageStackLoader cachedLoader = new CachedImageStackLoader(imageFilenames, loader.getDtype(), loader.getShape());
+			LazyDataset lazyDataset = new LazyDataset(FOLDER_STACK, loader.getDtype(), loader.getShape(), cachedLoader);
 			data.addDataset(lazyDataset.getName(), lazyDataset);
 		}
 		
@@ -44,9 +44,11 @@ public class GridEntryMonitor {
 	    }
 		fullCacheArea = new Rectangle(0,0,xDim,yDim);
 		
-		execSvc = Executors.newFixedThreadPool(2);
+		int workers = ThumbnailLoadService.getNumberOfWorkers();
+		execSvc = Executors.newFixedThreadPool(workers);
 		service = new ThumbnailLoadService(viewName);
-		execSvc.execute(service);		
+		for (int i = 0; i < workers; i++)
+			execSvc.execute(service);
 	}
 	
 	public void resizeDisplayArea(int newWidth, int newHeight) {
@@ -172,8 +174,10 @@ public class GridEntryMonitor {
 						int xPos = rx + purgeArea.x;
 						int yPos = ry + purgeArea.y;
 						AbstractGridEntry entry = grid.getGridEntry(xPos, yPos);
-						if (entry != null)
+						if (entry != null) {
+							service.cancelLoadJob(entry);
 							entry.deActivate();
+						}
 					}
 				}					
 			}
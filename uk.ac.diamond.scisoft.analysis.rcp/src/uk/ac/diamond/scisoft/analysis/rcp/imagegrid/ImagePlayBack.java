@@ -9,10 +9,17 @@
 
 package uk.ac.diamond.scisoft.analysis.rcp.imagegrid;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.dawb.common.ui.util.DisplayUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Scale;
 import org.eclipse.ui.IWorkbenchPage;
@@ -22,35 +29,81 @@ import org.eclipse.ui.views.IViewDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.ac.diamond.scisoft.analysis.PlotServer;
 import uk.ac.diamond.scisoft.analysis.PlotServerProvider;
+import uk.ac.diamond.scisoft.analysis.SDAPlotter;
 import uk.ac.diamond.scisoft.analysis.plotserver.FileOperationBean;
 import uk.ac.diamond.scisoft.analysis.plotserver.GuiBean;
 import uk.ac.diamond.scisoft.analysis.plotserver.GuiParameters;
 import uk.ac.diamond.scisoft.analysis.rcp.queue.InteractiveJob;
 import uk.ac.diamond.scisoft.analysis.rcp.queue.InteractiveJobAdapter;
 import uk.ac.diamond.scisoft.analysis.rcp.queue.InteractiveQueue;
+import uk.ac.diamond.scisoft.analysis.utils.ImageThumbnailLoader;
 
 /**
- *
+ * Plays back a list of image files in a plot view.
+ * <p>
+ * The next few frames are decoded ahead on background threads into a bounded buffer
+ * and are shown at a steady rate of one frame per delay period. When decoding falls
+ * behind, frames that are late are dropped and the latest decoded frame is shown so
+ * playback keeps time rather than stalls. The achieved frame rate is logged and can be
+ * read with {@link #getAchievedFPS()}.
+ * <p>
+ * When the plot server is remote, frames are requested from the server at the same
+ * rate without being decoded here.
  */
 public class ImagePlayBack implements Runnable {
 
 	// Adding in some logging to help with getting this running
 	transient private static final Logger logger = LoggerFactory.getLogger(ImagePlayBack.class);
-	
+
+	private static final int READAHEAD = 4;
+	private static final int DECODERS = 2;
+	private static final long RATEINTERVAL = 2000; // in ms
+
 	private ArrayList<String> jobFiles;
 	private ArrayList<String> allFiles;
 	private int playPos;
 	private boolean terminate = false;
+	private boolean running = false;
 	private String viewName;
 	private boolean hasOpenedView = false;
-	private boolean waitTillfinished = false;
 	private boolean paused = false;
 	private boolean autoRewind = false;
 	private IWorkbenchPage page;
 	private int delay = 250;
 	private int step = 1;
 	private Scale sldProgress;
+	private boolean localDecoding;
+	private ExecutorService decoders;
+
+	// frames in order of play, with sequence numbers counting frame periods
+	private ArrayDeque<Frame> buffer = new ArrayDeque<Frame>();
+	private boolean flushBuffer = false;
+	private long nextSeq;
+	private long dueSeq;
+
+	private int shownFrames;
+	private int droppedFrames;
+	private long rateStart;
+	private volatile double achievedFPS;
+
+	private static class Frame {
+		final long seq;
+		final int pos;
+		final String file;
+		Future<IDataset> data;
+
+		Frame(long seq, int pos, String file) {
+			this.seq = seq;
+			this.pos = pos;
+			this.file = file;
+		}
+
+		boolean isReady() {
+			return data == null || data.isDone();
+		}
+	}
 
 	class IJob extends InteractiveJobAdapter {
 		private String file;
@@ -84,9 +137,16 @@ public class ImagePlayBack implements Runnable {
 		this.step = step;
 		this.sldProgress = slider;
 		jobQueue = new InteractiveQueue(control);
+		PlotServer plotServer = PlotServerProvider.getPlotServer();
+		try {
+			localDecoding = plotServer.isServerLocal();
+		} catch (Exception e) {
+			// cannot happen but is needed for interface
+		}
+		decoders = Executors.newFixedThreadPool(DECODERS);
 	}
 
-	/** 
+	/**
 	 * Sets the Plot View used to play back the images
 	 * @param viewName
 	 */
@@ -94,32 +154,28 @@ public class ImagePlayBack implements Runnable {
 		this.viewName = viewName;
 	}
 
-	private void sendOffLoadRequest(String filename) {
-		if (!hasOpenedView) {
-			waitTillfinished = true;
-			DisplayUtils.runInDisplayThread(true, sldProgress, new Runnable() {
-					@Override
-					public void run() {
-						try {
-							IViewDescriptor[] views = PlatformUI.getWorkbench().getViewRegistry().getViews();
-							for (int i = 0; i < views.length; i++)
-								if (views[i].getLabel().equals(viewName))
-									page.showView(views[i].getId());
-						} catch (PartInitException e) {
-							e.printStackTrace();
-						}
-						waitTillfinished = false;
+	private void openView() {
+		if (hasOpenedView)
+			return;
+		// wait for view so first frame is not lost
+		DisplayUtils.runInDisplayThread(false, sldProgress, new Runnable() {
+				@Override
+				public void run() {
+					try {
+						IViewDescriptor[] views = PlatformUI.getWorkbench().getViewRegistry().getViews();
+						for (int i = 0; i < views.length; i++)
+							if (views[i].getLabel().equals(viewName))
+								page.showView(views[i].getId());
+					} catch (PartInitException e) {
+						logger.error("Could not open view {}", viewName, e);
 					}
-				});
-			hasOpenedView = true;
-		}
-		while (waitTillfinished) {
-			try {
-				Thread.sleep(2500);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
+				}
+			});
+		hasOpenedView = true;
+	}
+
+	private void sendOffLoadRequest(String filename) {
+		openView();
 		ArrayList<String> files = new ArrayList<String>();
 		files.add(filename);
 		GuiBean fileLoadBean = new GuiBean();
@@ -132,71 +188,230 @@ public class ImagePlayBack implements Runnable {
 			PlotServerProvider.getPlotServer().updateGui(viewName, fileLoadBean);
 			logger.debug("Returned from sending request");
 		} catch (Exception ex) {
-			ex.printStackTrace();
+			logger.error("Could not request {}", filename, ex);
+		}
+	}
+
+	private void showFrame(Frame frame) {
+		final int pos = frame.pos;
+		sldProgress.getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (!sldProgress.isDisposed())
+					sldProgress.setSelection(pos);
+			}
+		});
+
+		if (frame.data == null) {
+			sendOffLoadRequest(frame.file);
+			return;
+		}
+
+		IDataset image = null;
+		try {
+			image = frame.data.get();
+		} catch (InterruptedException e) {
+			return;
+		} catch (ExecutionException e) {
+			logger.error("Could not load {}", frame.file, e.getCause());
+		}
+		if (image == null)
+			return;
+
+		openView();
+		try {
+			SDAPlotter.imagePlot(viewName, image);
+		} catch (Exception e) {
+			logger.error("Could not plot {}", frame.file, e);
 		}
 	}
 
 	@Override
 	public void run() {
-		while(!terminate) {
-			String fileEntry = null;
-			synchronized(jobFiles) {
-				if (playPos < jobFiles.size() && !paused) {
-					fileEntry = jobFiles.get(playPos);
-					final int tPos = playPos;
-					playPos+=step;
-					if (autoRewind && playPos >= jobFiles.size()) {
-						playPos = 0;
+		synchronized (this) {
+			if (running) // a previous run has been resumed by start()
+				return;
+			running = true;
+			flushBuffer = true;
+		}
+		long next = 0;
+		try {
+			while (true) {
+				Frame frame = null;
+				synchronized (this) {
+					if (terminate)
+						break;
+					long now = System.currentTimeMillis();
+					if (flushBuffer) {
+						flush();
+						next = now;
+						rateStart = now;
 					}
-					sldProgress.getDisplay().asyncExec(new Runnable() {
-						@Override
-						public void run() {
-							sldProgress.setSelection(tPos);
-						}
-					});
-				}
-			}
-			if (fileEntry != null) {
-				sendOffLoadRequest(fileEntry);
-				try {
-					Thread.sleep(delay);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			} else {
-				synchronized(this) {
-					try {
+					if (!paused)
+						fillBuffer();
+					if (paused || buffer.isEmpty()) {
+						reportRate(now, true);
 						wait();
-					} catch (InterruptedException e) {
-						e.printStackTrace();
+						flushBuffer = true; // restart timing after a pause
+						continue;
+					}
+					while (now >= next) { // frames are due every period
+						dueSeq++;
+						next += Math.max(delay, 1);
+					}
+					frame = takeDueFrame();
+					if (frame == null) {
+						// decoders notify when done
+						wait(next - now);
+						continue;
 					}
 				}
+				showFrame(frame);
+				synchronized (this) {
+					shownFrames++;
+					reportRate(System.currentTimeMillis(), false);
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.debug("Playback interrupted");
+		} finally {
+			synchronized (this) {
+				flush();
+				running = false;
 			}
 		}
 	}
 
+	/**
+	 * Start decoding frames from the play position until buffer is full. Frames that
+	 * could not be shown in time anyway are skipped
+	 */
+	private void fillBuffer() {
+		while (nextSeq <= dueSeq && playPos < jobFiles.size()) {
+			nextSeq++;
+			droppedFrames++;
+			advance();
+		}
+		while (buffer.size() < READAHEAD && playPos >= 0 && playPos < jobFiles.size()) {
+			Frame f = new Frame(nextSeq++, playPos, jobFiles.get(playPos));
+			if (localDecoding)
+				f.data = decoders.submit(new FrameLoader(f.file));
+			buffer.add(f);
+			advance();
+		}
+	}
+
+	private void advance() {
+		playPos += step;
+		if (autoRewind && playPos >= jobFiles.size()) {
+			playPos = 0;
+		}
+	}
+
+	/**
+	 * @return latest decoded frame that is due or null if none are ready. Due frames
+	 * before it are dropped
+	 */
+	private Frame takeDueFrame() {
+		Frame show = null;
+		int n = 0;
+		int i = 0;
+		for (Frame f : buffer) {
+			if (f.seq > dueSeq)
+				break;
+			i++;
+			if (f.isReady()) {
+				show = f;
+				n = i;
+			}
+		}
+		for (; n > 1; n--) {
+			Frame f = buffer.poll();
+			if (f.data != null)
+				f.data.cancel(false);
+			droppedFrames++;
+		}
+		if (show != null)
+			buffer.poll();
+		return show;
+	}
+
+	private void flush() {
+		for (Frame f : buffer) {
+			if (f.data != null)
+				f.data.cancel(false);
+		}
+		buffer.clear();
+		nextSeq = 0;
+		dueSeq = -1;
+		flushBuffer = false;
+	}
+
+	private void reportRate(long now, boolean stopped) {
+		long elapsed = now - rateStart;
+		if (elapsed < RATEINTERVAL && !stopped)
+			return;
+		if (shownFrames > 0 && elapsed > 0) {
+			achievedFPS = shownFrames * 1000. / elapsed;
+			logger.debug("Playback at {} fps ({} frames dropped) for target of {} fps",
+					String.format("%.1f", achievedFPS), droppedFrames, String.format("%.1f", 1000. / delay));
+		}
+		shownFrames = 0;
+		droppedFrames = 0;
+		rateStart = now;
+	}
+
+	/**
+	 * Loads full image of frame
+	 */
+	private class FrameLoader implements Callable<IDataset> {
+		private final String file;
+
+		public FrameLoader(String file) {
+			this.file = file;
+		}
+
+		@Override
+		public IDataset call() throws Exception {
+			try {
+				return ImageThumbnailLoader.loadImage(file, false, false);
+			} finally {
+				synchronized (ImagePlayBack.this) {
+					ImagePlayBack.this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return frame rate recently achieved in playback
+	 */
+	public double getAchievedFPS() {
+		return achievedFPS;
+	}
+
 	public synchronized void stop() {
 		playPos = 0;
 		terminate = true;
 		paused = false;
-		notify();
+		notifyAll();
 	}
-	
+
 	public synchronized void rewind() {
 		playPos = 0;
-		notify();
+		flushBuffer = true;
+		notifyAll();
 	}
-	
+
 	public synchronized void forward() {
-		synchronized(jobFiles) {
-			playPos = jobFiles.size()-1;
-		}
-		notify();
+		playPos = jobFiles.size()-1;
+		flushBuffer = true;
+		notifyAll();
 	}
 
 	public synchronized void start() {
 		if (paused)
-			notify();
+			notifyAll();
 
 		terminate = false;
 		paused = false;
@@ -205,38 +420,41 @@ public class ImagePlayBack implements Runnable {
 	public synchronized void setDelay(int newDelay) {
 		delay = newDelay;
 	}
-	
+
 	public synchronized boolean isPaused() {
 		return paused;
 	}
-	
+
 	public synchronized void pause() {
 		paused = true;
+		if (!buffer.isEmpty()) // resume from first frame not shown
+			playPos = buffer.peek().pos;
+		flushBuffer = true;
+		notifyAll();
 	}
-	
+
 	public synchronized void clearPlayback() {
-		synchronized(jobFiles) {
-			jobFiles.clear();
-			allFiles.clear();
-		}
+		jobFiles.clear();
+		allFiles.clear();
+		flushBuffer = true;
 	}
-		
+
 	public synchronized void addFile(String newFile) {
-		synchronized(jobFiles) {
-//			logger.debug("New file has been added "+newFile);
-			jobFiles.add(newFile);
-			allFiles.add(newFile);
-			DisplayUtils.runInDisplayThread(true, sldProgress, new Runnable() {
-				@Override
-				public void run() {
+//		logger.debug("New file has been added "+newFile);
+		jobFiles.add(newFile);
+		allFiles.add(newFile);
+		DisplayUtils.runInDisplayThread(true, sldProgress, new Runnable() {
+			@Override
+			public void run() {
+				synchronized (ImagePlayBack.this) {
 					sldProgress.setMaximum(jobFiles.size());
 				}
-			});
-//			logger.debug("Add file, current playPos "+playPos+" total pos "+jobFiles.size());
-			notify();
-		}
+			}
+		});
+//		logger.debug("Add file, current playPos "+playPos+" total pos "+jobFiles.size());
+		notifyAll();
 	}
-	
+
 	public synchronized void setSelection(ArrayList<String> selectedFiles) {
 		if (selectedFiles != null && selectedFiles.size() > 0) {
 			jobFiles.clear();
@@ -245,24 +463,30 @@ public class ImagePlayBack implements Runnable {
 			jobFiles.clear();
 			jobFiles.addAll(allFiles);
 		}
+		flushBuffer = true;
 		sldProgress.setMaximum(jobFiles.size());
 	}
 
 	public synchronized void moveToLast() {
 //		logger.debug("Move to last called");
 		forward();
-		if (paused || terminate) {
+		if ((paused || terminate) && playPos >= 0) {
 			String fileEntry = jobFiles.get(playPos);
 			if (fileEntry != null) {
-				sendOffLoadRequest(fileEntry);
+				try {
+					jobQueue.addJob(new IJob(fileEntry));
+				} catch (Exception e) {
+					logger.error("Cannot generate new job", e);
+				}
 			}
 		}
 //		logger.debug("Move to last new pos is "+playPos);
 	}
-	
+
 	public synchronized void setPlayPos(int newPos) {
 		playPos = newPos;
-		notify();
+		flushBuffer = true;
+		notifyAll();
 		if (paused || terminate) {
 			if (playPos < 0 || playPos >= jobFiles.size()) {
 				playPos = 0;
@@ -280,16 +504,18 @@ public class ImagePlayBack implements Runnable {
 			playPos+=step;
 		}
 	}
-	
+
 	public synchronized void setStepping(int newStep) {
 		step = newStep;
 	}
-	
+
 	public synchronized void setAutoRewind(boolean rewind) {
 		autoRewind = rewind;
 	}
 
 	public void dispose() {
+		stop();
+		decoders.shutdownNow();
 		jobQueue.dispose();
 	}
 }
@@ -12,12 +12,7 @@ package uk.ac.diamond.scisoft.analysis.rcp.imagegrid;
 import java.awt.Dimension;
 import java.io.IOException;
 
-import org.dawnsci.plotting.services.util.SWTImageUtils;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
-import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.Stats;
 import org.eclipse.dawnsci.plotting.api.histogram.IPaletteService;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
@@ -44,7 +39,6 @@ public class SWTGridEntry extends AbstractGridEntry {
 	private static Color green = null;
 	private static Color red = null;
 	private static Color blue = null;
-	private static long lastREDRAWinMillis = 0; 
 	
 	private Image gridImage;
 	private Dimension imageDim;
@@ -53,6 +47,8 @@ public class SWTGridEntry extends AbstractGridEntry {
 	@SuppressWarnings("unused")
 	private int colourMapChoice = 0;
 	private PaletteData paletteData;
+	private String colourScheme;
+	private boolean temporaryThumbnail = false;
 	/**
 	 * palette service used to retrieved the colour scheme
 	 */
@@ -83,6 +79,7 @@ public class SWTGridEntry extends AbstractGridEntry {
 		this(filename, additional);
 		this.canvas = canvas;
 		this.paletteData = pservice.getDirectPaletteData(colorScheme);
+		this.colourScheme = colorScheme;
 		this.loThreshold = loThreshold;
 		this.hiThreshold = hiThreshold;
 	}
@@ -93,11 +90,8 @@ public class SWTGridEntry extends AbstractGridEntry {
 		this.additionalInfo = null;
 		if (gridImage != null)
 			gridImage.dispose();
-		if (thumbnailFilename != null) {
-			java.io.File imageFile = new java.io.File(thumbnailFilename);
-			imageFile.delete();
-			thumbnailFilename = null;
-		}
+		deleteTemporaryThumbnail();
+		thumbnailFilename = null;
 	}
 
 	@Override
@@ -115,6 +109,7 @@ public class SWTGridEntry extends AbstractGridEntry {
 					file.deleteOnExit(); // We try to ensure that the thing does get removed.
 					
 					thumbnailFilename = file.getAbsolutePath();
+					temporaryThumbnail = true;
 					ImageLoader loader = new ImageLoader();
 					loader.data = new ImageData[]{gridImage.getImageData()};
 					loader.save(thumbnailFilename, SWT.IMAGE_PNG);
@@ -132,17 +127,15 @@ public class SWTGridEntry extends AbstractGridEntry {
 		if (gridImage == null) {
 			
 			if (canvas.isDisposed() || isDisposed) return;
-			canvas.getDisplay().asyncExec(new Runnable() {
-				@Override
-				public void run() {
-					gridImage = new Image(canvas.getDisplay(),thumbnailFilename);
-					// make sure system doesn't get flooded with redraw requests
-					if (System.currentTimeMillis()-lastREDRAWinMillis > 20) {
-						canvas.redraw();
-						lastREDRAWinMillis = System.currentTimeMillis();
-					}
-				}
-			});
+			final ImageData imgD;
+			try {
+				imgD = new ImageData(thumbnailFilename);
+			} catch (Exception e) {
+				logger.debug("Cannot reload cached thumbnail {}", thumbnailFilename);
+				thumbnailFilename = null;
+				return;
+			}
+			showImage(imgD);
 		} else {
 			logger.warn("Something is wrong");
 		}
@@ -153,146 +146,50 @@ public class SWTGridEntry extends AbstractGridEntry {
 		return gridImage == null;
 	}
 
+	/**
+	 * Render thumbnail from dataset. The rendering is done on the calling thread
+	 * and only the finished image is created on the display thread
+	 */
 	@Override
 	public void createImage(final IDataset ids) {
-		
-		final Dataset ds = DatasetUtils.convertToDataset(ids);
-		
+		if (canvas.isDisposed() || isDisposed) return;
+
+		final ImageData imgD;
+		try {
+			imgD = new ThumbnailRenderer(paletteData, loThreshold, hiThreshold).render(ids);
+		} catch (Exception e) {
+			setStatus(INVALIDSTATUS);
+			logger.debug(e.getMessage());
+			return;
+		}
+		if (imgD == null) {
+			setStatus(INVALIDSTATUS);
+			return;
+		}
+		ThumbnailCache cache = ThumbnailCache.getDefault();
+		if (cache != null) {
+			java.io.File file = cache.put(getCacheKey(), imgD);
+			if (file != null) {
+				deleteTemporaryThumbnail();
+				thumbnailFilename = file.getAbsolutePath();
+			}
+		}
+		showImage(imgD);
+	}
+
+	private void showImage(final ImageData imgD) {
 		if (canvas.isDisposed() || isDisposed) return;
 		canvas.getDisplay().asyncExec(new Runnable() {
 			@Override
 			public void run() {
-				final int[] shape = ds.getShape();
-				try {
-					if (shape.length == 2) {
-						double[] m;
-						if (hiThreshold < 1) {
-							if (loThreshold > 0) {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									m = Stats.quantile(rgb.createRedDataset(Dataset.INT16), loThreshold, hiThreshold);
-									double[] t = Stats.quantile(rgb.createGreenDataset(Dataset.INT16), loThreshold, hiThreshold);
-									if (m[0] > t[0])
-										m[0] = t[0];
-									if (m[1] < t[1])
-										m[1] = t[1];
-									t = Stats.quantile(rgb.createBlueDataset(Dataset.INT16), loThreshold, hiThreshold);
-									if (m[0] > t[0])
-										m[0] = t[0];
-									if (m[1] < t[1])
-										m[1] = t[1];
-								} else {
-									m = Stats.quantile(ds, loThreshold, hiThreshold);
-								}
-							} else {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									Dataset c = rgb.createRedDataset(Dataset.INT16);
-									double min = c.min().doubleValue();
-									double max = Stats.quantile(c, hiThreshold);
-									double t;
-
-									c = rgb.createGreenDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = Stats.quantile(c, hiThreshold);
-									if (max < t)
-										max = t;
-
-									c = rgb.createBlueDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = Stats.quantile(c, hiThreshold);
-									if (max < t)
-										max = t;
-
-									m = new double[] {min, max};
-								} else {
-									m = new double[] {ds.min().doubleValue(), Stats.quantile(ds, hiThreshold)};
-								}
-							}
-						} else {
-							if (loThreshold > 0) {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									Dataset c = rgb.createRedDataset(Dataset.INT16);
-									double min = Stats.quantile(c, loThreshold);
-									double max = c.max().doubleValue();
-									double t;
-
-									c = rgb.createGreenDataset(Dataset.INT16);
-									t = Stats.quantile(c, loThreshold);
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-
-									c = rgb.createBlueDataset(Dataset.INT16);
-									t = Stats.quantile(c, loThreshold);
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-									m = new double[] {min, max};
-								} else {
-									m = new double[] {Stats.quantile(ds, loThreshold), ds.max().doubleValue()};
-								}
-							} else {
-								if (ds instanceof RGBDataset) {
-									RGBDataset rgb = (RGBDataset) ds;
-									Dataset c = rgb.createRedDataset(Dataset.INT16);
-									double min = c.min().doubleValue();
-									double max = c.max().doubleValue();
-									double t;
-
-									c = rgb.createGreenDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-
-									c = rgb.createBlueDataset(Dataset.INT16);
-									t = c.min().doubleValue();
-									if (min > t)
-										min = t;
-									t = c.max().doubleValue();
-									if (max < t)
-										max = t;
-									m = new double[] {min, max};
-									
-								} else {
-									m = new double[] {ds.min().doubleValue(), ds.max().doubleValue()};
-								}
-							}
-						}
-						// Old mapping not necessary anymore 
-//						int redSelect = GlobalColourMaps.colourSelectList.get(colourMapChoice * 4);
-//						int greenSelect = GlobalColourMaps.colourSelectList.get(colourMapChoice * 4 + 1);
-//						int blueSelect = GlobalColourMaps.colourSelectList.get(colourMapChoice * 4 + 2);
-//						AbstractMapFunction redFunc = GlobalColourMaps.mappingFunctions.get(Math.abs(redSelect));
-//						AbstractMapFunction greenFunc = GlobalColourMaps.mappingFunctions.get(Math.abs(greenSelect));
-//						AbstractMapFunction blueFunc = GlobalColourMaps.mappingFunctions.get(Math.abs(blueSelect));
-//						ImageData imgD = SWTImageUtils.createImageData(ds, m[0], m[1], redFunc, greenFunc, blueFunc,
-//								(redSelect < 0), (greenSelect < 0), (blueSelect < 0));
-						ImageData imgD = SWTImageUtils.createImageData(ds, m[0], m[1], paletteData);
-						gridImage = new Image(canvas.getDisplay(), imgD);
-						imageDim = new Dimension(shape[1], shape[0]);
-						canvas.redraw();
-					} else {
-						setStatus(INVALIDSTATUS);
-					}
-				} catch (Exception e) {
-					setStatus(INVALIDSTATUS);
-					logger.debug(e.getMessage());
-				}
+				if (canvas.isDisposed() || isDisposed) return;
+				if (gridImage != null && !gridImage.isDisposed())
+					gridImage.dispose();
+				gridImage = new Image(canvas.getDisplay(), imgD);
+				imageDim = new Dimension(imgD.width, imgD.height);
+				// redraw only invalidates the canvas so bursts of new thumbnails get coalesced into one paint
+				canvas.redraw();
 			}
-			
 		});
 	}
 
@@ -358,27 +255,45 @@ public class SWTGridEntry extends AbstractGridEntry {
 		return imageDim;
 	}
 
+	/**
+	 * @return true if there is a thumbnail file for this entry. This includes
+	 * thumbnails left in the persistent thumbnail cache by earlier sessions
+	 */
 	public boolean hasThumbnailImage() {
+		if (thumbnailFilename == null) {
+			ThumbnailCache cache = ThumbnailCache.getDefault();
+			java.io.File file = cache == null ? null : cache.get(getCacheKey());
+			if (file != null)
+				thumbnailFilename = file.getAbsolutePath();
+		}
 		return thumbnailFilename != null;
 	}
+
+	private String getCacheKey() {
+		return ThumbnailCache.createKey(filename, colourScheme, loThreshold, hiThreshold);
+	}
+
+	private void deleteTemporaryThumbnail() {
+		if (temporaryThumbnail && thumbnailFilename != null) {
+			java.io.File imageFile = new java.io.File(thumbnailFilename);
+			imageFile.delete();
+		}
+		temporaryThumbnail = false;
+	}
 	
 	public boolean hasImage() {
 		return (gridImage != null && !gridImage.isDisposed());
 	}
 
-	private boolean isDisposed = false;
+	private volatile boolean isDisposed = false;
 	@Override
 	public void dispose() {
 		isDisposed = true;
 		if (gridImage != null &&
 			!gridImage.isDisposed())
 			gridImage.dispose();
-		
-        if (thumbnailFilename != null)	
-        {
-        	java.io.File imageFile = new java.io.File(thumbnailFilename);
-        	imageFile.delete();
-        }
+
+		deleteTemporaryThumbnail();
 	}
 
 	@Override
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.imagegrid;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.scisoft.analysis.rcp.AnalysisRCPActivator;
+import uk.ac.diamond.scisoft.analysis.rcp.preference.PreferenceConstants;
+
+/**
+ * Persistent store of rendered thumbnails kept in the plugin's state location so
+ * it survives restarts. Thumbnails are keyed on the image file's path and modification
+ * time plus the colour settings used to render it. When the store grows beyond its
+ * size limit (see {@link PreferenceConstants#IMAGEEXPLORER_THUMBNAILCACHESIZE}), the
+ * least recently used thumbnails are deleted. The order of use is kept in memory and
+ * only saved coarsely in the file modification times, which are updated on use when
+ * more than {@link #TOUCH_INTERVAL} old, so most reads do not write to disk.
+ */
+public class ThumbnailCache {
+	private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+	private static final String SUFFIX = ".png";
+	private static final String FOLDER = "thumbnails";
+	static final long TOUCH_INTERVAL = 60 * 60 * 1000; // ms
+
+	private static ThumbnailCache cache;
+
+	private final File directory;
+	private final LinkedHashMap<String, Long> entries; // name to file size, in access order
+	private long totalSize;
+	private long maxSize;
+
+	/**
+	 * @return shared cache or null if plugin has no state location
+	 */
+	public static synchronized ThumbnailCache getDefault() {
+		if (cache == null) {
+			AnalysisRCPActivator plugin = AnalysisRCPActivator.getDefault();
+			if (plugin == null)
+				return null;
+			try {
+				File dir = plugin.getStateLocation().append(FOLDER).toFile();
+				cache = new ThumbnailCache(dir, getPreferenceCacheSize() * 1024L * 1024L);
+			} catch (Exception e) {
+				logger.warn("Cannot create thumbnail cache", e);
+				return null;
+			}
+		}
+		return cache;
+	}
+
+	private static int getPreferenceCacheSize() {
+		IPreferenceStore preferenceStore = AnalysisRCPActivator.getDefault().getPreferenceStore();
+		return preferenceStore.isDefault(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE)
+				? preferenceStore.getDefaultInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE)
+				: preferenceStore.getInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE);
+	}
+
+	/**
+	 * @param directory
+	 * @param maxSize in bytes
+	 */
+	public ThumbnailCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, Long>(256, 0.75f, true);
+		directory.mkdirs();
+
+		File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File f) {
+				return f.isFile() && f.getName().endsWith(SUFFIX);
+			}
+		});
+		if (files != null) {
+			// restore order of use from last time
+			Arrays.sort(files, new Comparator<File>() {
+				@Override
+				public int compare(File a, File b) {
+					return Long.compare(a.lastModified(), b.lastModified());
+				}
+			});
+			for (File f : files) {
+				long size = f.length();
+				entries.put(f.getName(), size);
+				totalSize += size;
+			}
+		}
+		trim();
+	}
+
+	/**
+	 * Create key for thumbnail of given image file rendered with given colour settings
+	 * @param filename
+	 * @param colourScheme
+	 * @param loThreshold
+	 * @param hiThreshold
+	 * @return key or null if file cannot be found
+	 */
+	public static String createKey(String filename, String colourScheme, double loThreshold, double hiThreshold) {
+		File f = new File(filename);
+		long modified = f.lastModified();
+		if (modified == 0)
+			return null;
+
+		String id = f.getAbsolutePath() + '|' + modified + '|' + colourScheme + '|' + loThreshold + '|' + hiThreshold;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(id.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder(2 * hash.length);
+			for (byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xf, 16));
+				key.append(Character.forDigit(b & 0xf, 16));
+			}
+			return key.toString();
+		} catch (Exception e) {
+			logger.error("Cannot create thumbnail key", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return thumbnail file or null if not cached
+	 */
+	public synchronized File get(String key) {
+		if (key == null)
+			return null;
+		String name = key + SUFFIX;
+		if (entries.get(name) == null)
+			return null;
+
+		File f = new File(directory, name);
+		if (!f.isFile()) {
+			remove(name);
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (now - f.lastModified() > TOUCH_INTERVAL)
+			f.setLastModified(now);
+		return f;
+	}
+
+	/**
+	 * Store thumbnail
+	 * @param key
+	 * @param data
+	 * @return thumbnail file or null if it could not be stored
+	 */
+	public File put(String key, ImageData data) {
+		if (key == null)
+			return null;
+		String name = key + SUFFIX;
+		File f = new File(directory, name);
+		try {
+			// write outside lock to a temporary name so readers never see partial files
+			File tmp = File.createTempFile(key, ".tmp", directory);
+			ImageLoader loader = new ImageLoader();
+			loader.data = new ImageData[] {data};
+			loader.save(tmp.getAbsolutePath(), SWT.IMAGE_PNG);
+			synchronized (this) {
+				if (!tmp.renameTo(f)) {
+					tmp.delete();
+					return entries.containsKey(name) ? f : null;
+				}
+				Long old = entries.put(name, f.length());
+				if (old != null)
+					totalSize -= old;
+				totalSize += f.length();
+				trim();
+			}
+		} catch (Exception e) {
+			logger.warn("Cannot store thumbnail in cache", e);
+			return null;
+		}
+		return f;
+	}
+
+	/**
+	 * Set maximum size and evict thumbnails if necessary
+	 * @param maxSize in bytes
+	 */
+	public synchronized void setMaximumSize(long maxSize) {
+		this.maxSize = maxSize;
+		trim();
+	}
+
+	/**
+	 * Delete all thumbnails
+	 */
+	public synchronized void clear() {
+		for (String name : entries.keySet()) {
+			new File(directory, name).delete();
+		}
+		entries.clear();
+		totalSize = 0;
+	}
+
+	private void remove(String name) {
+		Long size = entries.remove(name);
+		if (size != null)
+			totalSize -= size;
+	}
+
+	private void trim() {
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+		while (totalSize > maxSize && it.hasNext()) {
+			Map.Entry<String, Long> e = it.next();
+			new File(directory, e.getKey()).delete();
+			totalSize -= e.getValue();
+			it.remove();
+		}
+	}
+}
@@ -14,8 +14,15 @@ import gda.observable.IObserver;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
@@ -33,24 +40,57 @@ import uk.ac.diamond.scisoft.analysis.utils.ImageThumbnailLoader;
 
 
 /**
- *
+ * Loads thumbnails for grid entries. The same instance is run by several worker
+ * threads (see {@link #getNumberOfWorkers()}) which all take jobs from a high and
+ * a low priority queue. Queued jobs can be cancelled and jobs already in flight
+ * will not create an image once cancelled.
+ * <p>
+ * When the plot server is remote, thumbnails are requested in batches of files.
+ * Only one batch is in flight at a time as the server keeps just the latest reply
+ * for a view, so a second batch's reply could replace the first's before it is
+ * read. Results are matched to their entries by filename.
  */
 public class ThumbnailLoadService implements Runnable, IObserver {
 	transient private static final Logger logger = LoggerFactory.getLogger(ThumbnailLoadService.class);
-	
-	private boolean terminate = false;
+
+	private static final int MAXWORKERS = 8;
+	private static final int SERVERBATCHSIZE = 16;
+	private static final long SERVERTIMEOUT = 30000; // in ms
+
+	private volatile boolean terminate = false;
 	private boolean localProcessing;
-	private ArrayDeque<AbstractGridEntry> highPriorityQueue;
-	private ArrayDeque<AbstractGridEntry> lowPriorityQueue;
+	private LinkedHashSet<AbstractGridEntry> highPriorityQueue;
+	private LinkedHashSet<AbstractGridEntry> lowPriorityQueue;
+	private ArrayDeque<ServerResult> resultQueue = new ArrayDeque<ServerResult>();
+	private Set<AbstractGridEntry> inFlight = new HashSet<AbstractGridEntry>();
+	private Set<AbstractGridEntry> cancelled = new HashSet<AbstractGridEntry>();
 	private PlotServer plotServer;
-	private ArrayList<String> files = new ArrayList<String>();
-	private AbstractGridEntry currentProcessEntry = null;
-	private final Semaphore locker = new Semaphore(1);
+	private Map<String, ServerBatch> serverRequests = new HashMap<String, ServerBatch>();
+	private List<ServerBatch> serverBatches = new ArrayList<ServerBatch>();
+	private final Semaphore serverLocker = new Semaphore(1); // one batch in flight
 	private String viewName;
-	
+
+	/**
+	 * Files requested from server in one bean
+	 */
+	private static class ServerBatch {
+		final Map<String, AbstractGridEntry> entries = new HashMap<String, AbstractGridEntry>();
+		final long sent = System.currentTimeMillis();
+	}
+
+	private static class ServerResult {
+		final AbstractGridEntry entry;
+		final Dataset data;
+
+		ServerResult(AbstractGridEntry entry, Dataset data) {
+			this.entry = entry;
+			this.data = data;
+		}
+	}
+
 	public ThumbnailLoadService(String viewName) {
-		highPriorityQueue = new ArrayDeque<AbstractGridEntry>();
-		lowPriorityQueue = new ArrayDeque<AbstractGridEntry>();
+		highPriorityQueue = new LinkedHashSet<AbstractGridEntry>();
+		lowPriorityQueue = new LinkedHashSet<AbstractGridEntry>();
 		plotServer = PlotServerProvider.getPlotServer();
 		plotServer.addIObserver(this);
 		try {
@@ -60,146 +100,274 @@ public class ThumbnailLoadService implements Runnable, IObserver {
 		}
 		this.viewName = viewName;
 	}
-	
+
+	/**
+	 * @return number of threads that should run this service
+	 */
+	public static int getNumberOfWorkers() {
+		return Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), MAXWORKERS));
+	}
+
 	@Override
 	public void run() {
 		while (!terminate) {
-			
 			AbstractGridEntry entry = null;
-			synchronized(highPriorityQueue) {
-				if (highPriorityQueue.size() > 0)	
-					entry = highPriorityQueue.pop();
+			ServerResult result = null;
+			synchronized (this) {
+				result = resultQueue.poll();
+				if (result == null) {
+					entry = pop(highPriorityQueue);
+					if (entry == null)
+						entry = pop(lowPriorityQueue);
+					if (entry == null) {
+						try {
+							wait();
+						} catch (InterruptedException ex) {
+							return;
+						}
+						continue;
+					}
+					inFlight.add(entry);
+				}
 			}
-			if (entry != null)
-				processJob(entry);
-			else {
-				synchronized(lowPriorityQueue) {
-					if (lowPriorityQueue.size() > 0)
-						entry = lowPriorityQueue.pop();
+
+			if (result != null) {
+				if (!isCancelled(result.entry))
+					result.entry.createImage(result.data);
+				synchronized (this) {
+					cancelled.remove(result.entry);
 				}
-				if (entry != null) processJob(entry);
-				else {
-					try {
+				continue;
+			}
+
+			List<AbstractGridEntry> batch = new ArrayList<AbstractGridEntry>();
+			try {
+				if (processJob(entry))
+					batch.add(entry);
+				if (!batch.isEmpty()) {
+					// fill up batch with more entries waiting to be processed
+					while (batch.size() < SERVERBATCHSIZE) {
+						AbstractGridEntry next;
 						synchronized (this) {
-							wait();
+							next = pop(highPriorityQueue);
+							if (next == null)
+								next = pop(lowPriorityQueue);
+							if (next == null)
+								break;
+							inFlight.add(next);
 						}
-					} catch (InterruptedException ex) {
-					} 
+						if (processJob(next))
+							batch.add(next);
+						else
+							finishJob(next);
+					}
+					requestImagesFromServer(batch);
+				}
+			} catch (Exception e) {
+				logger.error("Could not load thumbnail for {}", entry.getFilename(), e);
+			} finally {
+				finishJob(entry);
+				for (AbstractGridEntry e : batch) {
+					finishJob(e);
 				}
 			}
 		}
 	}
-	
-	private void undoBlock() {
-		locker.release();
+
+	private synchronized void finishJob(AbstractGridEntry entry) {
+		inFlight.remove(entry);
+		if (!isPendingOnServer(entry))
+			cancelled.remove(entry);
+	}
+
+	private static AbstractGridEntry pop(LinkedHashSet<AbstractGridEntry> queue) {
+		Iterator<AbstractGridEntry> it = queue.iterator();
+		if (!it.hasNext())
+			return null;
+		AbstractGridEntry entry = it.next();
+		it.remove();
+		return entry;
 	}
-	
-	private void requestImageFromServer(AbstractGridEntry entry) {
+
+	private synchronized boolean isCancelled(AbstractGridEntry entry) {
+		return terminate || cancelled.contains(entry);
+	}
+
+	private synchronized boolean isPendingOnServer(AbstractGridEntry entry) {
+		ServerBatch b = serverRequests.get(entry.getFilename());
+		return b != null && b.entries.get(entry.getFilename()) == entry;
+	}
+
+	/**
+	 * Wait for a free slot for a server request. Batches that the server has not answered
+	 * in time are dropped so their entries can be requested again
+	 * @return true if slot is acquired
+	 */
+	private boolean acquireServerSlot() throws InterruptedException {
+		while (!terminate) {
+			if (serverLocker.tryAcquire(SERVERTIMEOUT, TimeUnit.MILLISECONDS))
+				return true;
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				Iterator<ServerBatch> it = serverBatches.iterator();
+				while (it.hasNext()) {
+					ServerBatch b = it.next();
+					if (now - b.sent > SERVERTIMEOUT) {
+						logger.warn("No reply from server for {} thumbnails", b.entries.size());
+						for (String f : b.entries.keySet()) {
+							serverRequests.remove(f);
+						}
+						cancelled.removeAll(b.entries.values());
+						it.remove();
+						serverLocker.release();
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private void requestImagesFromServer(List<AbstractGridEntry> entries) {
+		try {
+			if (!acquireServerSlot())
+				return;
+		} catch (InterruptedException e) {
+			return;
+		}
+
+		ServerBatch batch = new ServerBatch();
+		ArrayList<String> files = new ArrayList<String>();
+		synchronized (this) {
+			for (AbstractGridEntry e : entries) {
+				String f = e.getFilename();
+				if (!isCancelled(e) && !serverRequests.containsKey(f)) {
+					batch.entries.put(f, e);
+					serverRequests.put(f, batch);
+					files.add(f);
+				}
+			}
+			if (files.isEmpty()) {
+				serverLocker.release();
+				return;
+			}
+			serverBatches.add(batch);
+		}
+
 		GuiBean bean = new GuiBean();
-		files.clear();
 		FileOperationBean fopBean = new FileOperationBean(FileOperationBean.GETIMAGEFILE_THUMB);
-		files.add(entry.getFilename());
 		fopBean.setFiles(files);
 		bean.put(GuiParameters.FILEOPERATION, fopBean);
 		try {
 			plotServer.updateGui(viewName, bean);
 		} catch (Exception e) {
-			locker.release();
-			e.printStackTrace();
+			synchronized (this) {
+				for (String f : files) {
+					serverRequests.remove(f);
+				}
+				serverBatches.remove(batch);
+			}
+			serverLocker.release();
+			logger.error("Could not request thumbnails from server", e);
 		}
 	}
-	
+
 	private void loadAndCreateThumbnailImage(AbstractGridEntry entry) {
 		IDataset ds = ImageThumbnailLoader.loadImage(entry.getFilename(),true, false);
-		entry.createImage(ds);
-		locker.release();
+		if (ds != null && !isCancelled(entry))
+			entry.createImage(ds);
 	}
-	
-	private void processJob(AbstractGridEntry entry) {
-		try {
-			locker.acquire();
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
-		}
-		currentProcessEntry = entry;
+
+	/**
+	 * @param entry
+	 * @return true if entry needs its image from the server
+	 */
+	private boolean processJob(AbstractGridEntry entry) {
 		if (entry instanceof SWTGridEntry) {
-			if (!((SWTGridEntry)entry).hasThumbnailImage()) {
-				if (!localProcessing) 
-					requestImageFromServer(entry);
-				else
-					loadAndCreateThumbnailImage(entry);
+			SWTGridEntry swtEntry = (SWTGridEntry) entry;
+			if (swtEntry.hasImage() || isCancelled(entry))
+				return false;
+			if (!swtEntry.hasThumbnailImage()) {
+				if (!localProcessing)
+					return !isPendingOnServer(entry);
+				loadAndCreateThumbnailImage(entry);
 			} else {
-				((SWTGridEntry)entry).loadThumbImage();
-				try {
-					Thread.sleep(30);
-				} catch (InterruptedException ex) {}
-				locker.release();
+				swtEntry.loadThumbImage();
 			}
-		}		
+		}
+		return false;
 	}
+
 	public synchronized void addLoadJob(AbstractGridEntry entry, boolean highPriority) {
-		notify();
+		cancelled.remove(entry);
+		if (inFlight.contains(entry) || isPendingOnServer(entry))
+			return;
 		if (highPriority) {
-			synchronized(highPriorityQueue) {
-				highPriorityQueue.add(entry);
-			} 
-		} else {
-			synchronized(lowPriorityQueue) {
-				lowPriorityQueue.add(entry);
-			}
+			lowPriorityQueue.remove(entry);
+			highPriorityQueue.add(entry);
+		} else if (!highPriorityQueue.contains(entry)) {
+			lowPriorityQueue.add(entry);
 		}
+		notify();
+	}
+
+	/**
+	 * Remove entry from the queues. If it is currently being loaded then
+	 * the loaded image is discarded
+	 * @param entry
+	 */
+	public synchronized void cancelLoadJob(AbstractGridEntry entry) {
+		if (!highPriorityQueue.remove(entry) && !lowPriorityQueue.remove(entry)
+				&& (inFlight.contains(entry) || isPendingOnServer(entry)))
+			cancelled.add(entry);
 	}
 
 	public synchronized void clearLowPriorityQueue() {
-		synchronized(lowPriorityQueue) {
-			lowPriorityQueue.clear();
-		}
+		lowPriorityQueue.clear();
 	}
-	
+
 	public synchronized void clearHighPriorityQueue() {
-		synchronized(highPriorityQueue) {
-			highPriorityQueue.clear();			
-		}
+		highPriorityQueue.clear();
 	}
-	
+
 	@Override
 	public void update(Object source, Object changeCode) {
-		if (changeCode instanceof String && 
+		if (changeCode instanceof String &&
 			changeCode.equals(viewName)) {
 			DataBean dbPlot;
 			try {
 				dbPlot = plotServer.getData(viewName);
 				Collection<DatasetWithAxisInformation> plotData = dbPlot.getData();
 				Iterator<DatasetWithAxisInformation > iter = plotData.iterator();
-				while (iter.hasNext())
-				{
-					DatasetWithAxisInformation dsAxis = iter.next();
-					Dataset ds = dsAxis.getData();
-					if (ds.getName().equals(currentProcessEntry.getFilename()))
+				synchronized (this) {
+					while (iter.hasNext())
 					{
-						currentProcessEntry.createImage(ds);
-					} else {
-						logger.error("Oops, no match between dataset {} and current entry {}", ds.getName(),
-								currentProcessEntry.getFilename());
+						DatasetWithAxisInformation dsAxis = iter.next();
+						Dataset ds = dsAxis.getData();
+						ServerBatch batch = serverRequests.remove(ds.getName());
+						if (batch == null) {
+							logger.error("Oops, no requested entry matches dataset {}", ds.getName());
+							continue;
+						}
+						AbstractGridEntry entry = batch.entries.remove(ds.getName());
+						if (batch.entries.isEmpty() && serverBatches.remove(batch))
+							serverLocker.release();
+						// leave image creation to the workers so server notifications are not held up
+						resultQueue.add(new ServerResult(entry, ds));
 					}
+					notifyAll();
 				}
 			} catch (Exception e) {
-				e.printStackTrace();
-			} finally {
-				undoBlock();
+				logger.error("Could not process thumbnails from server", e);
 			}
 		}
 	}
-	
+
 	public synchronized void shutdown() {
-		notify();
-		synchronized(highPriorityQueue) {
-			highPriorityQueue.clear();
-		}
-		synchronized(lowPriorityQueue) {
-			lowPriorityQueue.clear();
-		}
-		plotServer.deleteIObserver(this);
 		terminate = true;
+		highPriorityQueue.clear();
+		lowPriorityQueue.clear();
+		resultQueue.clear();
+		notifyAll();
+		plotServer.deleteIObserver(this);
 	}
 }
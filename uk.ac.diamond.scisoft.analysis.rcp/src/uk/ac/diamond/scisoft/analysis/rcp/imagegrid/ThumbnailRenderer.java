@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.imagegrid;
+
+import org.dawnsci.plotting.services.util.SWTImageUtils;
+import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+
+import uk.ac.diamond.scisoft.analysis.rcp.util.ColourMapper;
+import uk.ac.diamond.scisoft.analysis.rcp.util.QuantileEstimator;
+
+/**
+ * Renders a dataset into thumbnail image data. This does the expensive part of creating a
+ * grid entry image (contrast thresholds, down-sampling and palette mapping) and does not
+ * touch the display so it should be called from a worker thread. Only the final conversion
+ * of the returned {@link ImageData} into an SWT image needs to happen on the display thread.
+ * <p>
+ * Thresholds are estimated from a sample of the pixels unless an exact estimator is given.
+ */
+public class ThumbnailRenderer {
+
+	/**
+	 * Rendered thumbnails are kept at up to this multiple of the maximum tile size so that
+	 * the enlarged tooltip tile still looks sharp
+	 */
+	private static final int OVERSAMPLING = 2;
+
+	private final PaletteData paletteData;
+	private final double loThreshold;
+	private final double hiThreshold;
+	private final QuantileEstimator estimator;
+	private ColourMapper mapper;
+
+	public ThumbnailRenderer(PaletteData paletteData, double loThreshold, double hiThreshold) {
+		this(paletteData, loThreshold, hiThreshold, new QuantileEstimator());
+	}
+
+	public ThumbnailRenderer(PaletteData paletteData, double loThreshold, double hiThreshold,
+			QuantileEstimator estimator) {
+		this.paletteData = paletteData;
+		this.loThreshold = loThreshold;
+		this.hiThreshold = hiThreshold;
+		this.estimator = estimator;
+	}
+
+	/**
+	 * @param ids
+	 * @return image data of down-sampled thumbnail or null if dataset is not two-dimensional
+	 * @throws Exception
+	 */
+	public ImageData render(IDataset ids) throws Exception {
+		Dataset ds = DatasetUtils.convertToDataset(ids);
+		if (ds == null || ds.getRank() != 2)
+			return null;
+
+		double[] m = getContrastRange(ds, loThreshold, hiThreshold, estimator);
+		Dataset thumb = downsample(ds, AbstractImageGrid.MAXTHUMBWIDTH * OVERSAMPLING,
+				AbstractImageGrid.MAXTHUMBHEIGHT * OVERSAMPLING);
+		ColourMapper cm = getMapper();
+		if (cm == null || thumb instanceof RGBDataset)
+			return SWTImageUtils.createImageData(thumb, m[0], m[1], paletteData);
+		return cm.mapToImageData(thumb, m[0], m[1]);
+	}
+
+	/**
+	 * @return mapper for palette or null if palette has no colour list
+	 */
+	private synchronized ColourMapper getMapper() {
+		if (mapper == null && paletteData != null && paletteData.getRGBs() != null)
+			mapper = ColourMapper.createFromPalette(paletteData);
+		return mapper;
+	}
+
+	/**
+	 * Work out minimum and maximum values used for colour mapping from the given quantile thresholds.
+	 * A low threshold of zero or a high threshold of one means use the actual minimum or maximum.
+	 * For RGB datasets, the range spans all three channels
+	 * @param ds
+	 * @param lo
+	 * @param hi
+	 * @param estimator
+	 * @return array of min and max
+	 */
+	public static double[] getContrastRange(Dataset ds, double lo, double hi, QuantileEstimator estimator) {
+		if (ds instanceof RGBDataset) {
+			RGBDataset rgb = (RGBDataset) ds;
+			double[] m = getContrastRange(rgb.createRedDataset(Dataset.INT16), lo, hi, estimator);
+			mergeRange(m, getContrastRange(rgb.createGreenDataset(Dataset.INT16), lo, hi, estimator));
+			mergeRange(m, getContrastRange(rgb.createBlueDataset(Dataset.INT16), lo, hi, estimator));
+			return m;
+		}
+
+		if (lo > 0 && hi < 1)
+			return estimator.quantile(ds, lo, hi);
+
+		double min = lo > 0 ? estimator.quantile(ds, lo) : ds.min().doubleValue();
+		double max = hi < 1 ? estimator.quantile(ds, hi) : ds.max().doubleValue();
+		return new double[] {min, max};
+	}
+
+	private static void mergeRange(double[] m, double[] t) {
+		if (m[0] > t[0])
+			m[0] = t[0];
+		if (m[1] < t[1])
+			m[1] = t[1];
+	}
+
+	/**
+	 * Reduce image by taking every n-th pixel in both directions so it fits within given size
+	 * @param ds
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @return down-sampled dataset (or original if it already fits)
+	 */
+	public static Dataset downsample(Dataset ds, int maxWidth, int maxHeight) {
+		int[] shape = ds.getShape();
+		int step = Math.max((shape[0] + maxHeight - 1) / maxHeight, (shape[1] + maxWidth - 1) / maxWidth);
+		if (step <= 1)
+			return ds;
+
+		return ds.getSlice(new int[] {0, 0}, shape, new int[] {step, step});
+	}
+}
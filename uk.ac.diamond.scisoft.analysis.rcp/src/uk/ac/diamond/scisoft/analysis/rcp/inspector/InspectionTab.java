@@ -774,85 +774,7 @@ class PlotTab extends ATab {
 		Dataset slicedData = null;
 		
 		if (ArrayUtils.contains(average, true)) {
-			Dataset averagedData = null;
-			Dataset averagedError = null;
-			List<Integer> axs = new ArrayList<Integer>();
-			int[] slicesShape = new int[slices.length];
-			int resDim = 0;
-			for (int idx = 0; idx < slices.length; idx++) {
-				slicesShape[idx] = slices[idx].getNumSteps();
-				if (!average[idx]) {
-					axs.add(idx);
-					if (slicesShape[idx] > 1)
-						resDim++;
-				} 
-			}
-
-			// For 1D data preload last averaged dimension into memory to reduce number of data slicing calls 
-			int meanAxis = -1;
-			if (resDim == 1) {
-				meanAxis = slicesShape.length - 1;
-				while (meanAxis >= 0 && !average[meanAxis])
-					meanAxis--;
-				if (meanAxis != -1)
-					axs.add(meanAxis);
-			}
-
-			PositionIterator pitr = new PositionIterator(slicesShape, ArrayUtils.toPrimitive(axs.toArray(new Integer[0])));
-			int sliceIdx = 0;
-			while (pitr.hasNext()) {
-				int[] ppos = pitr.getPos();
-				Slice[] tmpSlices = new Slice[slices.length];
-				for (int idx = 0; idx < ppos.length; idx++) {
-					if (axs.contains(idx)) {
-						tmpSlices[idx] = slices[idx].clone();
-					} else {
-						Integer step = slices[idx].getStep();
-						Integer start = slices[idx].getStart() == null ? step*ppos[idx] : slices[idx].getStart() + step*ppos[idx];
-						Integer stop = start + step;
-						tmpSlices[idx] = new Slice(start, stop, step);
-					}
-				}
-				
-				Dataset tmpSlice = DatasetUtils.convertToDataset(dataset.getSlice(tmpSlices));
-				Dataset errSlice = tmpSlice.getErrorBuffer(); // TODO remove when done internally
-				tmpSlice.setError(null);
-				if (meanAxis != -1) {
-					int[] tmpShape = tmpSlice.getShape();
-					tmpShape[meanAxis] = 1;
-					tmpSlice = tmpSlice.mean(meanAxis);
-					tmpSlice.setShape(tmpShape);
-					if (errSlice != null) {
-						int[] errShape = errSlice.getShape();
-						if (errShape[meanAxis] > 1) {
-							errShape[meanAxis] = 1;
-							Dataset n = errSlice.count(meanAxis);
-							errSlice = errSlice.mean(meanAxis);
-							errSlice.idivide(n);
-							errSlice.setShape(errShape);
-						}
-					}
-				}
-
-				if (averagedData != null)
-					averagedData.iadd(tmpSlice);
-				else
-					averagedData = tmpSlice;
-
-				if (errSlice != null) {
-					if (averagedError != null)
-						averagedError.iadd(errSlice);
-					else
-						averagedError = errSlice;
-				}
-				sliceIdx++;
-			}
-			if (averagedData == null)
-				return null;
-			slicedData = averagedData.idivide(sliceIdx);
-			if (averagedError != null) {
-				slicedData.setErrorBuffer(averagedError.idivide(sliceIdx * sliceIdx));
-			}
+			slicedData = new SliceAverager(dataset, slices, average, monitor).average();
 		} else {
 			slicedData = sliceData(monitor, slices);
 		}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.inspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
+
+/**
+ * Averages a sliced dataset over some of its dimensions.
+ * <p>
+ * The innermost averaged dimension is read in blocks of many positions, as large as
+ * memory allows, rather than one position at a time. Blocks are summed in parallel
+ * and the sums combined. Reads are serialised on the dataset as lazy datasets are
+ * not safe to read from several threads. Averaging stops as soon as the monitor is
+ * cancelled.
+ */
+class SliceAverager {
+
+	/**
+	 * Largest number of items read in one block
+	 */
+	private static final int MAXIMUM_BLOCK_SIZE = 1 << 22;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private final ILazyDataset dataset;
+	private final IMonitor monitor;
+	private final List<Slice[]> blocks = new ArrayList<Slice[]>();
+	private final int axis; // dimension read in blocks
+
+	private static class Sum {
+		Dataset data;
+		Dataset error;
+		int count;
+	}
+
+	/**
+	 * @param dataset
+	 * @param slices
+	 * @param average true for dimensions to average over
+	 * @param monitor may be null
+	 */
+	SliceAverager(ILazyDataset dataset, Slice[] slices, boolean[] average, IMonitor monitor) {
+		this.dataset = dataset;
+		this.monitor = monitor;
+
+		final int rank = slices.length;
+		final int[] shape = new int[rank];
+		int last = -1;
+		long frame = 1; // items in one position of averaged dimensions
+		for (int i = 0; i < rank; i++) {
+			shape[i] = slices[i].getNumSteps();
+			if (average[i]) {
+				last = i;
+			} else {
+				frame *= shape[i];
+			}
+		}
+		axis = last;
+		if (axis < 0) return;
+
+		final int length = (int) Math.max(1, Math.min(shape[axis], MAXIMUM_BLOCK_SIZE / Math.max(1, frame)));
+		final int[] pos = new int[rank];
+		do {
+			for (int p = 0; p < shape[axis]; p += length) {
+				pos[axis] = p;
+				final Slice[] block = new Slice[rank];
+				for (int i = 0; i < rank; i++) {
+					if (!average[i]) {
+						block[i] = slices[i].clone();
+					} else {
+						final int n = i == axis ? Math.min(length, shape[axis] - p) : 1;
+						final int step = slices[i].getStep();
+						final int start = slices[i].getStart() == null ? step*pos[i] : slices[i].getStart() + step*pos[i];
+						block[i] = new Slice(start, start + step*n, step);
+					}
+				}
+				blocks.add(block);
+			}
+		} while (next(pos, shape, average));
+	}
+
+	/**
+	 * Move to next position in averaged dimensions other than block dimension
+	 * @return false when all done
+	 */
+	private boolean next(int[] pos, int[] shape, boolean[] average) {
+		for (int i = axis - 1; i >= 0; i--) {
+			if (!average[i]) continue;
+			if (++pos[i] < shape[i]) return true;
+			pos[i] = 0;
+		}
+		return false;
+	}
+
+	/**
+	 * @return mean with averaged dimensions of length one and its error set if the
+	 * dataset has errors, or null if nothing is averaged or the monitor is cancelled
+	 */
+	Dataset average() {
+		if (blocks.isEmpty()) return null;
+
+		final Sum sum = pool.invoke(new BlockTask(0, blocks.size()));
+		if (sum == null) return null;
+
+		Dataset mean = sum.data;
+		if (mean.getElementsPerItem() == 1 && !mean.hasFloatingPointElements()) {
+			mean = DatasetUtils.cast(mean, Dataset.FLOAT64);
+		}
+		mean.idivide(sum.count);
+		if (sum.error != null) {
+			mean.setErrorBuffer(sum.error.idivide((double) sum.count * sum.count));
+		}
+		return mean;
+	}
+
+	private boolean isCancelled() {
+		return monitor != null && monitor.isCancelled();
+	}
+
+	private class BlockTask extends RecursiveTask<Sum> {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		BlockTask(int from, int to) {
+			this.from = from;
+			this.to   = to;
+		}
+
+		@Override
+		protected Sum compute() {
+			if (isCancelled()) return null;
+			if (to - from == 1) return sum(blocks.get(from));
+
+			final int mid = (from + to) >>> 1;
+			final BlockTask right = new BlockTask(mid, to);
+			right.fork();
+			final Sum a = new BlockTask(from, mid).compute();
+			final Sum b = right.join();
+			if (a == null || b == null) return null;
+
+			a.data.iadd(b.data);
+			if (a.error != null && b.error != null) {
+				a.error.iadd(b.error);
+			} else if (b.error != null) {
+				a.error = b.error;
+			}
+			a.count += b.count;
+			return a;
+		}
+
+		private Sum sum(Slice[] block) {
+			final Dataset slice;
+			synchronized (dataset) {
+				if (isCancelled()) return null;
+				slice = DatasetUtils.convertToDataset(dataset.getSlice(block));
+			}
+			final Dataset error = slice.getErrorBuffer(); // TODO remove when done internally
+			slice.setError(null);
+
+			final int[] shape = slice.getShape();
+			final Sum sum = new Sum();
+			sum.count = shape[axis];
+			shape[axis] = 1;
+			sum.data = slice.sum(axis);
+			sum.data.setShape(shape);
+			if (error != null) {
+				if (error.getShape()[axis] > 1) {
+					sum.error = error.sum(axis);
+					sum.error.setShape(shape);
+				} else { // broadcast along block
+					sum.error = error.clone().imultiply(sum.count);
+				}
+			}
+			return sum;
+		}
+	}
+}
@@ -49,6 +49,7 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 	private Spinner spnWaitTime;
 	private Spinner spnSkipImages;
 	private Spinner spnImageSize;
+	private Spinner spnCacheSize;
 	private Combo cmbDisplayViews;
 
 	private IPaletteService pservice = (IPaletteService)PlatformUI.getWorkbench().getService(IPaletteService.class);
@@ -171,6 +172,15 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 		gdc.horizontalSpan = 2;
 		spnImageSize.setLayoutData(gdc);
 
+		Label lblCacheSize = new Label(comp, SWT.LEFT);
+		lblCacheSize.setText("Thumbnail cache size on disk");
+		spnCacheSize = new Spinner(comp, SWT.RIGHT | SWT.BORDER);
+		spnCacheSize.setMinimum(0);
+		spnCacheSize.setMaximum(10000);
+		spnCacheSize.setIncrement(16);
+		Label lblCacheUnits = new Label(comp, SWT.LEFT);
+		lblCacheUnits.setText("in MB");
+
 		initializePage();
 
 		parent.layout();
@@ -200,6 +210,7 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 		spnWaitTime.setSelection(getTimeDelayPreference());
 		spnSkipImages.setSelection(getPlaybackRatePreference());
 		spnImageSize.setSelection(getImageSizePreference());
+		spnCacheSize.setSelection(getThumbnailCacheSizePreference());
 		String viewName = getPlaybackViewPreference();
 		for (int i = 0; i < cmbDisplayViews.getItems().length; i++) {
 			if (cmbDisplayViews.getItems()[i].equals(viewName))
@@ -215,6 +226,7 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 		setPlaybackViewPreference(cmbDisplayViews.getItem(cmbDisplayViews.getSelectionIndex()));
 		setPlaybackRatePreference(spnSkipImages.getSelection());
 		setImageSizePreference(spnImageSize.getSelection());
+		setThumbnailCacheSizePreference(spnCacheSize.getSelection());
 	}
 
 	private void loadDefaultPreferences() {
@@ -224,6 +236,7 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 		spnWaitTime.setSelection(getDefaultTimeDelayPreference());
 		spnSkipImages.setSelection(getDefaultPlaybackRatePreference());
 		spnImageSize.setSelection(getDefaultImageSizePreference());
+		spnCacheSize.setSelection(getDefaultThumbnailCacheSizePreference());
 		String viewName = getDefaultPlaybackViewPreference();
 		for (int i = 0; i < cmbDisplayViews.getItems().length; i++) {
 			if (cmbDisplayViews.getItems()[i].equals(viewName))
@@ -259,6 +272,10 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 		return getPreferenceStore().getDefaultInt(PreferenceConstants.IMAGEEXPLORER_IMAGESIZE);
 	}
 
+	private int getDefaultThumbnailCacheSizePreference() {
+		return getPreferenceStore().getDefaultInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE);
+	}
+
 	private String getColourMapChoicePreference() {
 		if (getPreferenceStore().isDefault(PreferenceConstants.IMAGEEXPLORER_COLOURMAP)) {
 			return getPreferenceStore().getDefaultString(PreferenceConstants.IMAGEEXPLORER_COLOURMAP);
@@ -301,6 +318,13 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 		return getPreferenceStore().getInt(PreferenceConstants.IMAGEEXPLORER_IMAGESIZE);
 	}
 
+	private int getThumbnailCacheSizePreference() {
+		if (getPreferenceStore().isDefault(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE)) {
+			return getPreferenceStore().getDefaultInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE);
+		}
+		return getPreferenceStore().getInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE);
+	}
+
 	private String getPlaybackViewPreference() {
 		if (getPreferenceStore().isDefault(PreferenceConstants.IMAGEEXPLORER_PLAYBACKVIEW)) {
 			return getPreferenceStore().getDefaultString(PreferenceConstants.IMAGEEXPLORER_PLAYBACKVIEW);
@@ -346,4 +370,8 @@ public class ImageExplorerPreferencePage extends PreferencePage implements IWork
 	private void setImageSizePreference(int value) {
 		getPreferenceStore().setValue(PreferenceConstants.IMAGEEXPLORER_IMAGESIZE, value);
 	}
+
+	private void setThumbnailCacheSizePreference(int value) {
+		getPreferenceStore().setValue(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE, value);
+	}
 }
@@ -57,6 +57,7 @@ public class PreferenceConstants {
 	public static final String IMAGEEXPLORER_PLAYBACKVIEW = "imageExplorer.playbackView";
 	public static final String IMAGEEXPLORER_PLAYBACKRATE = "imageExplorer.playbackRate";
 	public static final String IMAGEEXPLORER_IMAGESIZE = "imageExplorer.imageSize";
+	public static final String IMAGEEXPLORER_THUMBNAILCACHESIZE = "imageExplorer.thumbnailCacheSize";
 
 	// Fitting 1D preferences
 	public static final String FITTING_1D_PEAKTYPE = "fitting1d.peak.type";
@@ -14,6 +14,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.SWT;
@@ -26,6 +27,8 @@ import org.slf4j.LoggerFactory;
 /**
  * A queue for interactive jobs. This is used where jobs can take some time and a conventional queue
  * would grow with more user interactions. The queue drops all but the last job added.
+ * A running job sees its monitor cancelled as soon as a newer job is added, so long
+ * jobs should check their monitor and give up early.
  */
 public class InteractiveQueue {
 	transient private static final Logger logger = LoggerFactory.getLogger(InteractiveQueue.class);
@@ -82,7 +85,12 @@ public class InteractiveQueue {
 							});
 						}
 						try {
-							obj.run(monitor);
+							obj.run(new ProgressMonitorWrapper(monitor) {
+								@Override
+								public boolean isCanceled() {
+									return super.isCanceled() || !jobQueue.isEmpty(); // superseded
+								}
+							});
 						} catch (Exception e) {
 							logger.error("Cannot run job", e);
 						}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.IndexIterator;
+import org.eclipse.dawnsci.plotting.api.histogram.functions.AbstractMapFunction;
+import org.eclipse.dawnsci.plotting.api.jreality.core.ScaleType;
+import org.eclipse.dawnsci.plotting.api.jreality.util.ScalingUtility;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * Maps values of a dataset to colours through a lookup table.
+ * <p>
+ * The table of ARGB colours is made once for a palette or set of channel functions and
+ * a value is mapped by scaling it into the table's range and taking the nearest entry,
+ * so there are no function calls per pixel. Datasets are split into blocks of rows that
+ * are mapped on several threads. Mappers do not change after creation so one can be
+ * shared between threads.
+ */
+public class ColourMapper {
+
+	/**
+	 * Number of entries in tables made from channel functions
+	 */
+	public static final int FUNCTION_TABLE_SIZE = 16384;
+
+	private static final int BLOCK = 64 * 1024;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private final int[] table;
+
+	/**
+	 * @param table ARGB colours for values from the low end of the range to the high end
+	 */
+	public ColourMapper(int[] table) {
+		if (table == null || table.length == 0)
+			throw new IllegalArgumentException("Table must have at least one colour");
+		this.table = table.clone();
+	}
+
+	/**
+	 * Make mapper from channel mapping functions
+	 * @param redFunc red channel mapping function
+	 * @param greenFunc green channel mapping function
+	 * @param blueFunc blue channel mapping function
+	 * @param alphaFunc alpha channel mapping function, or null for opaque
+	 * @param inverseRed invert red channel
+	 * @param inverseGreen invert green channel
+	 * @param inverseBlue invert blue channel
+	 * @param inverseAlpha invert alpha channel
+	 * @return mapper
+	 */
+	public static ColourMapper createFromFunctions(AbstractMapFunction redFunc, AbstractMapFunction greenFunc,
+			AbstractMapFunction blueFunc, AbstractMapFunction alphaFunc, boolean inverseRed, boolean inverseGreen,
+			boolean inverseBlue, boolean inverseAlpha) {
+		final int[] table = new int[FUNCTION_TABLE_SIZE];
+		for (int i = 0; i < table.length; i++) {
+			final double value = (double) i / (table.length - 1);
+			final int red = channel(redFunc, value, inverseRed);
+			final int green = channel(greenFunc, value, inverseGreen);
+			final int blue = channel(blueFunc, value, inverseBlue);
+			final int alpha = alphaFunc == null ? 255 : channel(alphaFunc, value, inverseAlpha);
+			table[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+		}
+		return new ColourMapper(table);
+	}
+
+	private static int channel(AbstractMapFunction func, double value, boolean inverse) {
+		final int c = func.mapToByte(value) & 0xff;
+		return inverse ? 255 - c : c;
+	}
+
+	/**
+	 * Make opaque mapper from the colours of a palette
+	 * @param palette indexed palette or direct palette with colour list (as given by the palette service)
+	 * @return mapper
+	 */
+	public static ColourMapper createFromPalette(PaletteData palette) {
+		final RGB[] rgbs = palette.getRGBs();
+		if (rgbs == null || rgbs.length == 0)
+			throw new IllegalArgumentException("Palette has no colour list");
+		final int[] table = new int[rgbs.length];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = 0xff000000 | (rgbs[i].red << 16) | (rgbs[i].green << 8) | rgbs[i].blue;
+		}
+		return new ColourMapper(table);
+	}
+
+	/**
+	 * @return number of colours in table
+	 */
+	public int getTableSize() {
+		return table.length;
+	}
+
+	/**
+	 * Map dataset to colours. NaNs get the lowest colour
+	 * @param data
+	 * @param minValue value given the lowest colour
+	 * @param maxValue value given the highest colour
+	 * @param useLogarithmic map logarithm of values (and range)
+	 * @return ARGB colours in row-major order
+	 */
+	public int[] mapToARGB(Dataset data, double minValue, double maxValue, boolean useLogarithmic) {
+		if (useLogarithmic) {
+			ScalingUtility.setSmallLogFlag(false);
+			minValue = ScalingUtility.valueScaler(minValue, ScaleType.LN);
+			maxValue = ScalingUtility.valueScaler(maxValue, ScaleType.LN);
+		}
+		final int[] out = new int[data.getSize()];
+		final int rows = data.getRank() == 0 ? 1 : data.getShape()[0];
+		final int rowSize = rows == 0 ? 0 : out.length / rows;
+		final double scale = maxValue > minValue ? (table.length - 1) / (maxValue - minValue) : 0;
+		final RowAction action = new RowAction(data, out, rowSize, minValue, scale, useLogarithmic, 0, rows);
+		if ((long) out.length > BLOCK) {
+			pool.invoke(action);
+		} else {
+			action.compute();
+		}
+		return out;
+	}
+
+	/**
+	 * Map a 2D dataset to a 24-bit image
+	 * @param data
+	 * @param minValue value given the lowest colour
+	 * @param maxValue value given the highest colour
+	 * @return image data, one pixel per element with first dimension as height
+	 */
+	public ImageData mapToImageData(Dataset data, double minValue, double maxValue) {
+		final int[] shape = data.getShape();
+		if (shape.length != 2)
+			throw new IllegalArgumentException("Dataset must be 2D");
+		final int height = shape[0];
+		final int width = shape[1];
+		final int[] argb = mapToARGB(data, minValue, maxValue, false);
+
+		final ImageData image = new ImageData(width, height, 24, new PaletteData(0xff0000, 0xff00, 0xff));
+		final byte[] bytes = image.data;
+		for (int y = 0, i = 0; y < height; y++) {
+			int b = y * image.bytesPerLine;
+			for (int x = 0; x < width; x++, i++) {
+				final int c = argb[i];
+				bytes[b++] = (byte) (c >> 16);
+				bytes[b++] = (byte) (c >> 8);
+				bytes[b++] = (byte) c;
+			}
+		}
+		return image;
+	}
+
+	private class RowAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Dataset data;
+		private final int[] out;
+		private final int rowSize;
+		private final double min;
+		private final double scale;
+		private final boolean log;
+		private final int from;
+		private final int to;
+
+		RowAction(Dataset data, int[] out, int rowSize, double min, double scale, boolean log, int from, int to) {
+			this.data    = data;
+			this.out     = out;
+			this.rowSize = rowSize;
+			this.min     = min;
+			this.scale   = scale;
+			this.log     = log;
+			this.from    = from;
+			this.to      = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1 && (long) (to - from) * rowSize > BLOCK) {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new RowAction(data, out, rowSize, min, scale, log, from, mid),
+						new RowAction(data, out, rowSize, min, scale, log, mid, to));
+				return;
+			}
+			final IndexIterator it;
+			if (data.getRank() == 0) {
+				it = data.getIterator();
+			} else {
+				final int[] start = new int[data.getRank()];
+				final int[] stop = data.getShape();
+				start[0] = from;
+				stop[0] = to;
+				it = data.getSliceIterator(start, stop, null);
+			}
+			final int last = table.length - 1;
+			int i = from * rowSize;
+			while (it.hasNext()) {
+				double value = data.getElementDoubleAbs(it.index);
+				if (log)
+					value = ScalingUtility.valueScaler(value, ScaleType.LN);
+				final double t = (value - min) * scale;
+				// also catches NaN
+				final int index = !(t > 0) ? 0 : t >= last ? last : (int) (t + 0.5);
+				out[i++] = table[index];
+			}
+		}
+	}
+}
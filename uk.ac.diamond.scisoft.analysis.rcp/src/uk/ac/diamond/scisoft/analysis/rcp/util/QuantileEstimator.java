@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.util;
+
+import java.util.Arrays;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Stats;
+
+/**
+ * Estimates quantiles of images from a strided sample of pixels instead of
+ * sorting the whole dataset. This is intended for auto-contrast where only
+ * approximate thresholds are needed.
+ * <p>
+ * The accuracy is given as the maximum error in rank, as a fraction of the
+ * number of pixels. E.g. an error of 0.005 means the 98% quantile estimate
+ * lies between the exact 97.5% and 98.5% quantiles. The sample size is chosen
+ * so that this holds at the three standard deviation level. Datasets that
+ * are not two-dimensional or are too small to benefit from sampling use the
+ * exact {@link Stats#quantile(Dataset, double)} instead.
+ */
+public class QuantileEstimator {
+
+	/**
+	 * Default maximum rank error
+	 */
+	public static final double DEFAULT_RANK_ERROR = 0.005;
+
+	private static final double SIGMAS = 3;
+
+	private final double rankError;
+	private final int sampleSize;
+
+	/**
+	 * Create an estimator with default error
+	 */
+	public QuantileEstimator() {
+		this(DEFAULT_RANK_ERROR);
+	}
+
+	/**
+	 * @param rankError maximum error in rank as fraction of dataset size, zero or less means exact
+	 */
+	public QuantileEstimator(double rankError) {
+		this.rankError = rankError;
+		if (rankError > 0) {
+			// standard deviation of sample quantile's rank is at most 0.5/sqrt(n)
+			double n = Math.ceil(Math.pow(0.5 * SIGMAS / rankError, 2));
+			sampleSize = n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
+		} else {
+			sampleSize = Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * @return maximum error in rank
+	 */
+	public double getRankError() {
+		return rankError;
+	}
+
+	/**
+	 * @return number of values used for estimates
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * @param ds
+	 * @param q
+	 * @return estimate of given quantile
+	 */
+	public double quantile(Dataset ds, double q) {
+		return quantile(ds, new double[] {q})[0];
+	}
+
+	/**
+	 * @param ds
+	 * @param lo
+	 * @param hi
+	 * @return estimates of given pair of quantiles
+	 */
+	public double[] quantile(Dataset ds, double lo, double hi) {
+		return quantile(ds, new double[] {lo, hi});
+	}
+
+	/**
+	 * @param ds
+	 * @param qs
+	 * @return estimates of given quantiles
+	 */
+	public double[] quantile(Dataset ds, double[] qs) {
+		double[] sample = sample(ds);
+		if (sample == null) {
+			if (qs.length == 2)
+				return Stats.quantile(ds, qs[0], qs[1]);
+			double[] values = new double[qs.length];
+			for (int i = 0; i < qs.length; i++) {
+				values[i] = Stats.quantile(ds, qs[i]);
+			}
+			return values;
+		}
+
+		Arrays.sort(sample);
+		double[] values = new double[qs.length];
+		for (int i = 0; i < qs.length; i++) {
+			values[i] = interpolate(sample, qs[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Linear interpolation between closest ranks, as used by the exact method
+	 */
+	private static double interpolate(double[] sorted, double q) {
+		if (sorted.length == 0)
+			return Double.NaN;
+		double f = (sorted.length - 1) * q;
+		int i = (int) Math.floor(f);
+		if (i < 0)
+			return sorted[0];
+		if (i >= sorted.length - 1)
+			return sorted[sorted.length - 1];
+		double d = f - i;
+		return sorted[i] + d * (sorted[i + 1] - sorted[i]);
+	}
+
+	/**
+	 * Take a sample on a grid that covers the whole image. Each sampled row starts at a
+	 * different column offset to avoid aliasing with periodic detector structure (e.g.
+	 * module gaps). Values that are not finite are left out
+	 * @param ds
+	 * @return sample or null if exact method should be used
+	 */
+	private double[] sample(Dataset ds) {
+		if (ds.getRank() != 2 || ds.getElementsPerItem() != 1)
+			return null;
+		int size = ds.getSize();
+		if (size <= 2L * sampleSize)
+			return null;
+
+		int[] shape = ds.getShape();
+		int rows = shape[0];
+		int cols = shape[1];
+		double step = Math.sqrt((double) size / sampleSize);
+		int ystep = Math.max(1, Math.min(rows, (int) step));
+		int xstep = Math.max(1, (int) (size / ((double) sampleSize * ystep))); // round down so sample is not too small
+
+		double[] sample = new double[(rows / ystep + 1) * (cols / xstep + 1)];
+		int n = 0;
+		int r = 0;
+		for (int y = 0; y < rows; y += ystep, r++) {
+			// golden ratio sequence spreads the row offsets evenly
+			int offset = (int) (((r * 0.6180339887498949) % 1.0) * xstep);
+			for (int x = offset; x < cols; x += xstep) {
+				double v = ds.getDouble(y, x);
+				if (!Double.isNaN(v) && !Double.isInfinite(v))
+					sample[n++] = v;
+			}
+		}
+		return n == 0 ? null : Arrays.copyOf(sample, n);
+	}
+}
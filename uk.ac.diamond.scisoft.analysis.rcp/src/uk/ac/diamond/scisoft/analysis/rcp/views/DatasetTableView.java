@@ -9,12 +9,20 @@
 
 package uk.ac.diamond.scisoft.analysis.rcp.views;
 
-import java.io.PrintStream;
-import java.util.Set;
-
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.dialogs.ErrorDialog;
@@ -49,6 +57,7 @@ import org.eclipse.nebula.widgets.nattable.selection.command.ClearAllSelectionsC
 import org.eclipse.nebula.widgets.nattable.selection.command.SelectAllCommand;
 import org.eclipse.nebula.widgets.nattable.viewport.ViewportLayer;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.FileDialog;
@@ -328,6 +337,10 @@ class DatasetGridLayerStack extends DefaultGridLayer {
 	public IDataProvider getDataProvider() {
 		return bodyDataProvider;
 	}
+
+	public DatasetRowProvider getRowHeaderDataProvider() {
+		return rowHeaderDataProvider;
+	}
 }
 
 class DatasetColumnProvider implements IDataProvider {
@@ -413,6 +426,16 @@ class DatasetRowProvider implements IDataProvider {
 		setData(rows, data);
 	}
 
+	/**
+	 * Copy of other provider
+	 * @param other
+	 */
+	public DatasetRowProvider(DatasetRowProvider other) {
+		nrow = other.nrow;
+		off = other.off;
+		header = other.header;
+	}
+
 	/**
 	 * @param rows
 	 * @param data
@@ -435,6 +458,18 @@ class DatasetRowProvider implements IDataProvider {
 		return row >= off ? row - off : header;
 	}
 
+	/**
+	 * Append value as given by {@link #getDataValue(int, int)}
+	 * @param text
+	 * @param row
+	 */
+	public void appendDataValue(StringBuilder text, int row) {
+		if (row >= off)
+			text.append(row - off);
+		else
+			text.append(header);
+	}
+
 	@Override
 	public int getRowCount() {
 		return nrow + off;
@@ -521,6 +556,76 @@ class DatasetContentProvider implements IDataProvider {
 		throw new IllegalStateException("Should not have got here!");
 	}
 
+	/**
+	 * Append value as given by {@link #getDataValue(int, int)} without boxing numbers
+	 * @param text
+	 * @param col
+	 * @param row
+	 */
+	public void appendDataValue(StringBuilder text, int col, int row) {
+		if (row != 0 && col != 0) {
+			appendValue(text, data, row - roffset, col - coffset);
+			return;
+		}
+		if (row == 0) {
+			if (col == 0) {
+				if (roffset != 0) {
+					if (coffset == 0) {
+						appendValue(text, dcol, 0);
+					}
+				} else if (coffset != 0) {
+					appendValue(text, drow, 0);
+				} else {
+					appendValue(text, data, 0, 0);
+				}
+				return;
+			}
+			final int c = col - coffset;
+			if (roffset != 0) {
+				appendValue(text, dcol, c);
+			} else {
+				appendValue(text, data, 0, c);
+			}
+			return;
+		}
+		final int r = row - roffset;
+		if (coffset != 0) {
+			appendValue(text, drow, r);
+		} else {
+			appendValue(text, data, r, 0);
+		}
+	}
+
+	/**
+	 * Append item as its object would be
+	 */
+	private static void appendValue(StringBuilder text, IDataset d, int... pos) {
+		if (d instanceof Dataset) {
+			switch (((Dataset) d).getDtype()) {
+			case Dataset.BOOL:
+				text.append(d.getBoolean(pos));
+				return;
+			case Dataset.INT8:
+			case Dataset.INT16:
+			case Dataset.INT32:
+				text.append(d.getInt(pos));
+				return;
+			case Dataset.INT64:
+				text.append(d.getLong(pos));
+				return;
+			case Dataset.FLOAT32:
+				text.append(d.getFloat(pos));
+				return;
+			case Dataset.FLOAT64:
+				text.append(d.getDouble(pos));
+				return;
+			default:
+				break;
+			}
+		}
+		text.append(d.getObject(pos));
+	}
+
 	@Override
 	public int getRowCount() {
 		return shape[0];
@@ -569,42 +674,12 @@ class ExportSelectionCommandHandler extends AbstractLayerCommandHandler<ExportSe
 		}
 
 		final String separator = fileName.endsWith(".csv") ? ", " : "\t";
-		try {
-			final PrintStream stream = new PrintStream(fileName);
-
-			command.getShell().getDisplay().asyncExec(new Runnable() {
-
-				@Override
-				public void run() {
-					save(stream, separator, "\n");
-				}
-			});
-		} catch (Exception e) {
-		 	Status status = new Status(IStatus.ERROR, AnalysisRCPActivator.PLUGIN_ID, e.getMessage(), e); 
-		 	ErrorDialog.openError(command.getShell(), "Data export error", "Error exporting data table", status);
-		 	return false;
-		}
-
+		final ExportJob job = new ExportJob(new File(fileName), separator, "\n");
+		job.setUser(true);
+		job.schedule();
 		return true;
 	}
 
-	public void save(PrintStream stream, String separator, String rowDelimiter) {
-		final StringBuilder textData = new StringBuilder();
-		assembleHeaders(textData, separator, selLayer.getSelectedColumnPositions());
-		textData.append(rowDelimiter);
-
-		final Set<Range> selectedRows = selLayer.getSelectedRowPositions();
-		for (Range range : selectedRows) {
-			for (int rowPosition = range.start; rowPosition < range.end; rowPosition++) {
-				if (assembleBody(textData, separator, rowPosition))
-					textData.append(rowDelimiter);
-			}
-		}
-
-		stream.append(textData);
-		stream.close();
-	}
-
 	@Override
 	public Class<ExportSelectionCommand> getCommandClass() {
 		return ExportSelectionCommand.class;
@@ -629,25 +704,131 @@ class ExportSelectionCommandHandler extends AbstractLayerCommandHandler<ExportSe
 		}
 	}
 
-	protected boolean assembleBody(StringBuilder text, String delimiter, int currentRowPosition) {
-		final int[] selectedColumns = selLayer.getSelectedColumnPositions();
+	/**
+	 * Writes the selection to a file in the background. Everything it needs from the
+	 * layers is copied when it is made, in the UI thread, so the table can change or be
+	 * disposed while the rows are written.
+	 */
+	private class ExportJob extends Job {
+		private final File file;
+		private final String separator;
+		private final String rowDelimiter;
+		private final String header;
+		private final boolean rowsCustom;
+		private final boolean colsCustom;
+		private final DatasetContentProvider content;
+		private final DatasetRowProvider rowHeaders;
+		private final int[] rows;       // selected row positions
+		private final int[] rowIndexes; // and their data indexes
+		private final int[] cols;
+		private final int[] colIndexes;
+		private final Rectangle[] selections;
+
+		ExportJob(File file, String separator, String rowDelimiter) {
+			super("Exporting " + file.getName());
+			this.file = file;
+			this.separator = separator;
+			this.rowDelimiter = rowDelimiter;
+
+			final int[] selectedColumns = selLayer.getSelectedColumnPositions();
+			final StringBuilder text = new StringBuilder();
+			assembleHeaders(text, separator, selectedColumns);
+			header = text.toString();
+
+			rowsCustom = dataLayer.isRowHeadersCustom();
+			colsCustom = dataLayer.isColHeadersCustom();
+			final DatasetContentProvider c = (DatasetContentProvider) dataProvider;
+			content = new DatasetContentProvider(c.data, c.drow, c.dcol);
+			rowHeaders = new DatasetRowProvider(dataLayer.getRowHeaderDataProvider());
+
+			int n = 0;
+			for (Range range : selLayer.getSelectedRowPositions()) {
+				n += range.end - range.start;
+			}
+			rows = new int[n];
+			rowIndexes = new int[n];
+			n = 0;
+			for (Range range : selLayer.getSelectedRowPositions()) {
+				for (int rowPosition = range.start; rowPosition < range.end; rowPosition++) {
+					rows[n] = rowPosition;
+					rowIndexes[n++] = selLayer.getRowIndexByPosition(rowPosition);
+				}
+			}
 
-		if (currentRowPosition == 0 && dataLayer.isColHeadersCustom())
-			return false;
+			n = 0;
+			final int[] positions = new int[selectedColumns.length];
+			final int[] indexes = new int[selectedColumns.length];
+			for (int col : selectedColumns) {
+				if (col == 0 && rowsCustom)
+					continue;
+				positions[n] = col;
+				indexes[n++] = selLayer.getColumnIndexByPosition(col);
+			}
+			cols = Arrays.copyOf(positions, n);
+			colIndexes = Arrays.copyOf(indexes, n);
 
-		if (dataLayer.isRowHeadersCustom()) {
-			text.append(dataProvider.getDataValue(0, currentRowPosition));
-		} else {
-			text.append(dataLayer.getRowHeaderDataLayer().getDataValueByPosition(0, currentRowPosition));
+			final List<Rectangle> regions = selLayer.getSelectionModel().getSelections();
+			selections = regions.toArray(new Rectangle[regions.size()]);
 		}
-		for (int col : selectedColumns) {
-			if (selLayer.isCellPositionSelected(col, currentRowPosition)) {
-				if (col == 0 && dataLayer.isRowHeadersCustom())
-					continue;
-				text.append(delimiter);
-				text.append(selLayer.getDataValueByPosition(col, currentRowPosition));
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			monitor.beginTask(getName(), rows.length);
+			boolean cancelled = false;
+			try (Writer writer = Files.newBufferedWriter(file.toPath(), Charset.defaultCharset())) {
+				writer.write(header);
+				writer.write(rowDelimiter);
+
+				final StringBuilder line = new StringBuilder();
+				for (int i = 0; i < rows.length; i++) {
+					if (monitor.isCanceled()) {
+						cancelled = true;
+						break;
+					}
+					if (assembleBody(line, rows[i], rowIndexes[i])) {
+						line.append(rowDelimiter);
+						writer.append(line);
+					}
+					line.setLength(0);
+					monitor.worked(1);
+				}
+			} catch (IOException e) {
+				return new Status(IStatus.ERROR, AnalysisRCPActivator.PLUGIN_ID, "Error exporting data table", e);
+			} finally {
+				monitor.done();
 			}
+
+			if (cancelled) {
+				file.delete();
+				return Status.CANCEL_STATUS;
+			}
+			return Status.OK_STATUS;
+		}
+
+		private boolean assembleBody(StringBuilder text, int rowPosition, int rowIndex) {
+			if (rowPosition == 0 && colsCustom)
+				return false;
+
+			if (rowsCustom) {
+				content.appendDataValue(text, 0, rowPosition);
+			} else {
+				rowHeaders.appendDataValue(text, rowPosition);
+			}
+			for (int i = 0; i < cols.length; i++) {
+				if (isSelected(cols[i], rowPosition)) {
+					text.append(separator);
+					content.appendDataValue(text, colIndexes[i], rowIndex);
+				}
+			}
+			return true;
+		}
+
+		private boolean isSelected(int col, int row) {
+			for (Rectangle r : selections) {
+				if (r.contains(col, row))
+					return true;
+			}
+			return false;
 		}
-		return true;
 	}
 }
@@ -82,6 +82,7 @@ import uk.ac.diamond.scisoft.analysis.rcp.AnalysisRCPActivator;
 import uk.ac.diamond.scisoft.analysis.rcp.imagegrid.ImagePlayBack;
 import uk.ac.diamond.scisoft.analysis.rcp.imagegrid.SWTGridEntry;
 import uk.ac.diamond.scisoft.analysis.rcp.imagegrid.SWTImageGrid;
+import uk.ac.diamond.scisoft.analysis.rcp.imagegrid.ThumbnailCache;
 import uk.ac.diamond.scisoft.analysis.rcp.plotting.actions.ImageExplorerDirectoryChooseAction;
 import uk.ac.diamond.scisoft.analysis.rcp.preference.ImageExplorerPreferencePage;
 import uk.ac.diamond.scisoft.analysis.rcp.preference.PreferenceConstants;
@@ -292,7 +293,14 @@ public class ImageExplorerView extends ViewPart implements IObserver, SelectionL
 				if (event.getProperty().equals(PreferenceConstants.IMAGEEXPLORER_PLAYBACKVIEW)) {
 					playback.setPlotView(getPreferencePlaybackView());
 				}
+				if (event.getProperty().equals(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE)) {
+					ThumbnailCache cache = ThumbnailCache.getDefault();
+					if (cache != null)
+						cache.setMaximumSize(getPreferenceThumbnailCacheSize() * 1024L * 1024L);
+				}
 				if (event.getProperty().equals(PreferenceConstants.IMAGEEXPLORER_COLOURMAP)
+						|| event.getProperty().equals(PreferenceConstants.IMAGEEXPLORER_AUTOCONTRAST_LOTHRESHOLD)
+						|| event.getProperty().equals(PreferenceConstants.IMAGEEXPLORER_AUTOCONTRAST_HITHRESHOLD)
 						|| event.getProperty().equals(PreferenceConstants.IMAGEEXPLORER_IMAGESIZE)) {
 					List<GridImageEntry> images = imageGrid.getListOfEntries();
 					imageGrid.setThumbnailSize(getPreferenceImageSize());
@@ -970,6 +978,16 @@ public class ImageExplorerView extends ViewPart implements IObserver, SelectionL
 		return size;
 	}
 
+	/**
+	 * @return size of thumbnail cache in MB
+	 */
+	private int getPreferenceThumbnailCacheSize() {
+		IPreferenceStore preferenceStore = AnalysisRCPActivator.getDefault().getPreferenceStore();
+		return preferenceStore.isDefault(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE)
+				? preferenceStore.getDefaultInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE)
+				: preferenceStore.getInt(PreferenceConstants.IMAGEEXPLORER_THUMBNAILCACHESIZE);
+	}
+
 	public void setMonitorActive(boolean monitorActive) {
 		monActive = monitorActive;
 	}
@@ -17,19 +17,18 @@
 package uk.ac.diamond.scisoft.analysis.rcp.histogram;
 
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
-import org.eclipse.dawnsci.analysis.dataset.impl.IndexIterator;
 import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
 import org.eclipse.dawnsci.plotting.api.histogram.functions.AbstractMapFunction;
-import org.eclipse.dawnsci.plotting.api.jreality.core.ScaleType;
 import org.eclipse.dawnsci.plotting.api.jreality.data.ColourImageData;
-import org.eclipse.dawnsci.plotting.api.jreality.util.ScalingUtility;
 
+import uk.ac.diamond.scisoft.analysis.rcp.util.ColourMapper;
 
 
 /**
- *
+ * Maps datasets to colours. Images are mapped with a {@link ColourMapper} table made
+ * from the channel functions so the functions are not called for every pixel. The table
+ * is made again on each call as the functions are shared and can be changed in place.
  */
 @Deprecated
 public class ColourLookupTable {
@@ -68,39 +67,11 @@ public class ColourLookupTable {
 		int width = data.getShape()[1];
 		int height = data.getShape()[0];
 		ColourImageData returnImage = new ColourImageData(width,height);
-		if (useLogarithmic)
-		{
-			ScalingUtility.setSmallLogFlag(false);
-			minValue = ScalingUtility.valueScaler(minValue,ScaleType.LN);
-			maxValue = ScalingUtility.valueScaler(maxValue, ScaleType.LN);
-		}
-		for (int y = 0; y < height; y++)
-		{
-			for (int x = 0; x < width; x++)
-			{
-				
-				double value = data.getDouble(y, x);
-				if (useLogarithmic)
-					value = ScalingUtility.valueScaler(value, ScaleType.LN);
-				value = (value - minValue) / (maxValue-minValue);
-				value = Math.min(value,1.0);
-				value = Math.max(0.0, value);
-				short red = redFunc.mapToByte(value);
-				if (inverseRed)
-					red = (short)(255 - red);
-				short green = greenFunc.mapToByte(value);
-			    if (inverseGreen)
-			    	green = (short)(255 - green);
-			    short blue = blueFunc.mapToByte(value);
-			    if (inverseBlue)
-			    	blue = (short)(255 - blue);
-			    short alpha = alphaFunc.mapToByte(value);
-			    if (inverseAlpha)
-			    	alpha = (short)(255 - alpha);
-				int imageValue =  ((alpha&0xff) << 24)+((red&0xff) << 16)+((green&0xff) << 8)+(blue&0xff);
-				returnImage.set(imageValue, x+y*width);			    
-			}
-		}
+		int[] argb = ColourMapper.createFromFunctions(redFunc, greenFunc, blueFunc, alphaFunc,
+				inverseRed, inverseGreen, inverseBlue, inverseAlpha)
+				.mapToARGB(DatasetUtils.convertToDataset(data), minValue, maxValue, useLogarithmic);
+		for (int i = 0; i < argb.length; i++)
+			returnImage.set(argb[i], i);
 		return returnImage;
 	}
 
@@ -124,38 +95,15 @@ public class ColourLookupTable {
 			double maxValue, boolean useLogarithmic) {
 		int[] shape = data.getShape();
 		RGBDataset image = new RGBDataset(shape);
-		if (useLogarithmic) {
-			ScalingUtility.setSmallLogFlag(false);
-			minValue = ScalingUtility.valueScaler(minValue, ScaleType.LN);
-			maxValue = ScalingUtility.valueScaler(maxValue, ScaleType.LN);
-		}
-		Dataset idata = DatasetUtils.convertToDataset(data);
-		IndexIterator iti = image.getIterator();
-		IndexIterator itd = idata.getIterator();
-
-		short[] rgb = new short[3];
-		while (iti.hasNext() && itd.hasNext()) {
-			double value = idata.getElementDoubleAbs(itd.index);
-
-			if (useLogarithmic)
-				value = ScalingUtility.valueScaler(value, ScaleType.LN);
-
-			value = (value - minValue) / (maxValue - minValue);
-			value = Math.min(value, 1.0);
-			value = Math.max(0.0, value);
-			short red = redFunc.mapToByte(value);
-			if (inverseRed)
-				red = (short) (255 - red);
-			rgb[0] = red;
-			short green = greenFunc.mapToByte(value);
-			if (inverseGreen)
-				green = (short) (255 - green);
-			rgb[1] = green;
-			short blue = blueFunc.mapToByte(value);
-			if (inverseBlue)
-				blue = (short) (255 - blue);
-			rgb[2] = blue;
-			image.setAbs(iti.index, rgb);
+		int[] argb = ColourMapper.createFromFunctions(redFunc, greenFunc, blueFunc, null,
+				inverseRed, inverseGreen, inverseBlue, false)
+				.mapToARGB(DatasetUtils.convertToDataset(data), minValue, maxValue, useLogarithmic);
+		short[] rgb = image.getData();
+		for (int i = 0, j = 0; i < argb.length; i++) {
+			int c = argb[i];
+			rgb[j++] = (short) ((c >> 16) & 0xff);
+			rgb[j++] = (short) ((c >> 8) & 0xff);
+			rgb[j++] = (short) (c & 0xff);
 		}
 		return image;
 	}
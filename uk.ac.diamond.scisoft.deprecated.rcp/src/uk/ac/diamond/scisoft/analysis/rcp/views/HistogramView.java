@@ -32,11 +32,9 @@ import org.apache.commons.collections.map.AbstractReferenceMap;
 import org.apache.commons.collections.map.ReferenceMap;
 import org.dawnsci.plotting.jreality.tick.TickFormatting;
 import org.dawnsci.plotting.jreality.tool.AreaSelectEvent;
-import org.eclipse.dawnsci.analysis.api.downsample.DownsampleMode;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DatasetUtils;
 import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
-import org.eclipse.dawnsci.analysis.dataset.impl.Stats;
 import org.eclipse.dawnsci.plotting.api.histogram.functions.AbstractMapFunction;
 import org.eclipse.dawnsci.plotting.api.histogram.functions.GlobalColourMaps;
 import org.eclipse.dawnsci.plotting.api.histogram.functions.SpecialExposureFunction;
@@ -68,7 +66,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.analysis.axis.AxisValues;
-import uk.ac.diamond.scisoft.analysis.dataset.function.Downsample;
 import uk.ac.diamond.scisoft.analysis.dataset.function.Histogram;
 import uk.ac.diamond.scisoft.analysis.rcp.AnalysisRCPActivator;
 import uk.ac.diamond.scisoft.analysis.rcp.histogram.HistogramDataUpdate;
@@ -80,6 +77,7 @@ import uk.ac.diamond.scisoft.analysis.rcp.plotting.PlotWindow;
 import uk.ac.diamond.scisoft.analysis.rcp.plotting.PlottingMode;
 import uk.ac.diamond.scisoft.analysis.rcp.preference.PreferenceConstants;
 import uk.ac.diamond.scisoft.analysis.rcp.util.FloatSpinner;
+import uk.ac.diamond.scisoft.analysis.rcp.util.QuantileEstimator;
 
 /**
  * View that shows a histogram of a DataSet object, it allows to navigate in 
@@ -701,14 +699,7 @@ public class HistogramView extends ViewPart implements SelectionListener,
 		double[] m;
 		if (autoContrast && data.getRank() == 2) {
 			try {
-				final int[] shape = data.getShape();
-				if (shape[0] > 512 && shape[1] > 512) {
-					int yReduce = (int) Math.ceil(shape[0] / 512.0);
-					int xReduce = (int) Math.ceil(shape[1] / 512.0);
-					Downsample sample = new Downsample(DownsampleMode.MAXIMUM, xReduce, yReduce);
-					m = Stats.quantile((Dataset)sample.value(data).get(0), getPreferenceAutoContrastLo(), getPreferenceAutoContrastHi());
-				} else
-					m = Stats.quantile(data, getPreferenceAutoContrastLo(), getPreferenceAutoContrastHi());
+				m = new QuantileEstimator().quantile(data, getPreferenceAutoContrastLo(), getPreferenceAutoContrastHi());
 			} catch (Exception e) {
 				m = new double[] {data.min().doubleValue(), data.max().doubleValue()};
 			}
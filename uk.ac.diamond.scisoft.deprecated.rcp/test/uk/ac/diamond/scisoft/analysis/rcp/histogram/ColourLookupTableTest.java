@@ -0,0 +1,69 @@
+/*-
+ * Copyright 2013 Diamond Light Source Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.ac.diamond.scisoft.analysis.rcp.histogram;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.eclipse.dawnsci.analysis.dataset.impl.RGBDataset;
+import org.eclipse.dawnsci.plotting.api.histogram.functions.AbstractMapFunction;
+import org.eclipse.dawnsci.plotting.api.histogram.functions.GlobalColourMaps;
+import org.eclipse.dawnsci.plotting.api.histogram.functions.SpecialExposureFunction;
+import org.junit.Test;
+
+public class ColourLookupTableTest {
+
+	/**
+	 * The channel functions are shared and changed in place by the histogram view, so an
+	 * image made after changing thresholds must use the new thresholds.
+	 */
+	@Test
+	public void testThresholdChangeIsUsed() {
+		GlobalColourMaps.InitializeColourMaps();
+		SpecialExposureFunction func = null;
+		for (AbstractMapFunction f : GlobalColourMaps.mappingFunctions) {
+			if (f instanceof SpecialExposureFunction) {
+				func = (SpecialExposureFunction) f;
+				break;
+			}
+		}
+		assertNotNull("No special exposure function in colour maps", func);
+
+		double[] values = new double[100];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		DoubleDataset data = new DoubleDataset(values, 10, 10);
+
+		try {
+			func.setThresholds(0.0, 1.0);
+			RGBDataset before = ColourLookupTable.generateColourImage(data, func, func, func, false, false, false,
+					0, 99, false);
+			short[] first = before.getData().clone();
+
+			func.setThresholds(0.4, 0.6);
+			RGBDataset after = ColourLookupTable.generateColourImage(data, func, func, func, false, false, false,
+					0, 99, false);
+			assertFalse("Image was not changed by new thresholds", Arrays.equals(first, after.getData()));
+		} finally {
+			func.setThresholds(0.0, 1.0);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*-
+ * Copyright © 2011 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.diamond.scisoft.mappingexplorer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
+import org.junit.Test;
+
+import uk.ac.diamond.scisoft.mappingexplorer.views.SummaryPyramid;
+import uk.ac.diamond.scisoft.mappingexplorer.views.SummaryPyramid.Summary;
+
+/**
+ * Compare summaries from the pyramid with a scan over every pixel of the rectangle
+ */
+public class SummaryPyramidTest {
+
+	private static final int[][] SHAPES = { { 1, 1 }, { 16, 16 }, { 17, 33 }, { 50, 7 }, { 100, 129 } };
+
+	@Test
+	public void testWholeDataset() {
+		Random random = new Random(1);
+		for (int[] shape : SHAPES) {
+			DoubleDataset data = createData(random, shape[0], shape[1], 0);
+			check(data, new SummaryPyramid(data).getSummary(), 0, shape[0], 0, shape[1]);
+		}
+	}
+
+	@Test
+	public void testRandomRectangles() {
+		Random random = new Random(2);
+		for (int[] shape : SHAPES) {
+			DoubleDataset data = createData(random, shape[0], shape[1], 0);
+			checkRectangles(random, data, shape[0], shape[1]);
+		}
+	}
+
+	@Test
+	public void testRectanglesWithNaNs() {
+		Random random = new Random(3);
+		for (int[] shape : SHAPES) {
+			DoubleDataset data = createData(random, shape[0], shape[1], 0.1);
+			checkRectangles(random, data, shape[0], shape[1]);
+		}
+	}
+
+	@Test
+	public void testAllNaNs() {
+		DoubleDataset data = createData(new Random(4), 20, 40, 1);
+		Summary summary = new SummaryPyramid(data).getSummary();
+		assertEquals(0, summary.getCount());
+		assertTrue(Double.isNaN(summary.getMin()));
+		assertTrue(Double.isNaN(summary.getMax()));
+	}
+
+	private static DoubleDataset createData(Random random, int rows, int cols, double nanFraction) {
+		double[] values = new double[rows * cols];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble() < nanFraction ? Double.NaN : random.nextGaussian() * 100;
+		}
+		return new DoubleDataset(values, rows, cols);
+	}
+
+	/**
+	 * Check rectangles of random position and size, some of which reach outside the dataset
+	 */
+	private static void checkRectangles(Random random, DoubleDataset data, int rows, int cols) {
+		SummaryPyramid pyramid = new SummaryPyramid(data);
+		for (int i = 0; i < 200; i++) {
+			int r0 = random.nextInt(rows + 4) - 2;
+			int r1 = r0 + random.nextInt(rows + 4);
+			int c0 = random.nextInt(cols + 4) - 2;
+			int c1 = c0 + random.nextInt(cols + 4);
+			check(data, pyramid.getSummary(r0, r1, c0, c1), r0, r1, c0, c1);
+		}
+	}
+
+	private static void check(DoubleDataset data, Summary summary, int r0, int r1, int c0, int c1) {
+		int[] shape = data.getShape();
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		long count = 0;
+		for (int r = Math.max(0, r0); r < Math.min(shape[0], r1); r++) {
+			for (int c = Math.max(0, c0); c < Math.min(shape[1], c1); c++) {
+				double v = data.getDouble(r, c);
+				if (Double.isNaN(v)) {
+					continue;
+				}
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+				sum += v;
+				count++;
+			}
+		}
+		String rectangle = String.format("rows %d to %d, columns %d to %d of %dx%d", r0, r1, c0, c1, shape[0],
+				shape[1]);
+		assertEquals(rectangle, count, summary.getCount());
+		if (count == 0) {
+			assertTrue(rectangle, Double.isNaN(summary.getMin()));
+			assertTrue(rectangle, Double.isNaN(summary.getMax()));
+		} else {
+			assertEquals(rectangle, min, summary.getMin(), 0);
+			assertEquals(rectangle, max, summary.getMax(), 0);
+			assertEquals(rectangle, sum, summary.getSum(), 1e-9 * count * 100);
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/*-
+ * Copyright © 2011 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.diamond.scisoft.mappingexplorer.views;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
+import org.eclipse.dawnsci.analysis.api.dataset.Slice;
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of slices of the lazy datasets shown by the mapping views, so moving a stepper
+ * back over positions already seen does not read the file again.
+ * <p>
+ * A slice is given by a position with an index for each fixed dimension and -1 for each
+ * dimension taken whole. When successive slices step along one dimension, the next few
+ * slices in that direction (and one behind) are read in the background so they are ready
+ * when the stepper gets there. Reads are serialised on the dataset as lazy datasets cannot
+ * be read from several threads at once. The cache holds a bounded number of bytes and the
+ * least recently used slices are dropped first.
+ * <p>
+ * A {@link SummaryPyramid} is kept with each 2D slice. Prefetched slices have theirs
+ * built in the background too.
+ */
+public class SliceCache {
+	private static final Logger logger = LoggerFactory.getLogger(SliceCache.class);
+
+	private static final long MAXIMUM_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+	private static final int PREFETCH_AHEAD = 4;
+	private static final int PREFETCH_BEHIND = 1;
+
+	private static SliceCache instance;
+
+	private static class Key {
+		private final ILazyDataset dataset;
+		private final int[] position;
+
+		public Key(ILazyDataset dataset, int[] position) {
+			this.dataset = dataset;
+			this.position = position;
+		}
+
+		public Key move(int dimension, int index) {
+			int[] p = position.clone();
+			p[dimension] = index;
+			return new Key(dataset, p);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return dataset == other.dataset && Arrays.equals(position, other.position);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(dataset) + Arrays.hashCode(position);
+		}
+	}
+
+	private static class Entry {
+		private final Dataset slice;
+		private SummaryPyramid summary;
+
+		public Entry(Dataset slice) {
+			this.slice = slice;
+		}
+
+		public synchronized SummaryPyramid getSummaryIfPresent() {
+			return summary;
+		}
+
+		public synchronized SummaryPyramid getSummary() {
+			if (summary == null) {
+				summary = new SummaryPyramid(slice);
+			}
+			return summary;
+		}
+	}
+
+	private final LinkedHashMap<Key, Entry> slices = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+	private long bytes = 0;
+	private long generation = 0; // incremented by each invalidation
+
+	private Key last;
+	private int direction = 1;
+	private final LinkedList<Key> wanted = new LinkedList<Key>(); // nearest first
+	private boolean prefetching = false;
+
+	private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Mapping slice prefetch");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	public static synchronized SliceCache getInstance() {
+		if (instance == null) {
+			instance = new SliceCache();
+		}
+		return instance;
+	}
+
+	private SliceCache() {
+	}
+
+	/**
+	 * Get slice of dataset. The returned dataset has one dimension for each dimension
+	 * taken whole and is a view so it can be reshaped or renamed freely
+	 *
+	 * @param dataset
+	 * @param position
+	 *            index in each dimension or -1 to take whole dimension
+	 * @return slice
+	 */
+	public Dataset getSlice(ILazyDataset dataset, int... position) {
+		return getEntry(dataset, position).slice.getView();
+	}
+
+	/**
+	 * Get summary of 2D slice of dataset if the slice is in the cache and its summary has
+	 * been built, as it is for prefetched slices. This neither reads the slice nor counts
+	 * as a step for prefetching
+	 *
+	 * @param dataset
+	 * @param position
+	 *            index in each dimension or -1 to take whole dimension
+	 * @return summary or null
+	 */
+	public SummaryPyramid getSummaryIfPresent(ILazyDataset dataset, int... position) {
+		Entry entry;
+		synchronized (this) {
+			entry = slices.get(new Key(dataset, position.clone()));
+		}
+		return entry == null ? null : entry.getSummaryIfPresent();
+	}
+
+	/**
+	 * Drop all slices of dataset and any prefetches of it still waiting. Call this when a
+	 * dataset is no longer shown so its slices do not hold memory until they are evicted
+	 *
+	 * @param dataset
+	 */
+	public synchronized void invalidate(ILazyDataset dataset) {
+		if (dataset == null) {
+			return;
+		}
+		generation++;
+		Iterator<Map.Entry<Key, Entry>> it = slices.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			if (e.getKey().dataset == dataset) {
+				bytes -= e.getValue().slice.getNbytes();
+				it.remove();
+			}
+		}
+		Iterator<Key> w = wanted.iterator();
+		while (w.hasNext()) {
+			if (w.next().dataset == dataset) {
+				w.remove();
+			}
+		}
+		if (last != null && last.dataset == dataset) {
+			last = null;
+		}
+	}
+
+	private Entry getEntry(ILazyDataset dataset, int... position) {
+		Key key = new Key(dataset, position.clone());
+		Entry entry;
+		synchronized (this) {
+			entry = slices.get(key);
+			planPrefetch(key);
+		}
+		if (entry == null) {
+			entry = read(key);
+		}
+		return entry;
+	}
+
+	/**
+	 * Queue slices ahead of the given one in the direction it is being stepped through
+	 */
+	private void planPrefetch(Key key) {
+		int dimension = getSteppedDimension(key);
+		if (dimension >= 0 && isSameKind(last, key)) {
+			int step = key.position[dimension] - last.position[dimension];
+			if (step != 0) {
+				direction = step > 0 ? 1 : -1;
+			}
+		}
+		last = key;
+
+		wanted.clear();
+		if (dimension < 0) {
+			return;
+		}
+		int size = key.dataset.getShape()[dimension];
+		int index = key.position[dimension];
+		for (int i = 1; i <= PREFETCH_AHEAD; i++) {
+			want(key, dimension, index + direction * i, size);
+		}
+		for (int i = 1; i <= PREFETCH_BEHIND; i++) {
+			want(key, dimension, index - direction * i, size);
+		}
+		if (!wanted.isEmpty() && !prefetching) {
+			prefetching = true;
+			prefetcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					prefetch();
+				}
+			});
+		}
+	}
+
+	private void want(Key key, int dimension, int index, int size) {
+		if (index >= 0 && index < size) {
+			Key k = key.move(dimension, index);
+			if (!slices.containsKey(k)) {
+				wanted.add(k);
+			}
+		}
+	}
+
+	/**
+	 * @return dimension being stepped through, or -1 if it is not known
+	 */
+	private int getSteppedDimension(Key key) {
+		int[] p = key.position;
+		int fixed = -1;
+		int count = 0;
+		for (int i = 0; i < p.length; i++) {
+			if (p[i] >= 0) {
+				fixed = i;
+				count++;
+			}
+		}
+		if (count == 1) {
+			return fixed;
+		}
+		if (!isSameKind(last, key)) {
+			return -1;
+		}
+		int moved = -1;
+		for (int i = 0; i < p.length; i++) {
+			if (p[i] != last.position[i]) {
+				if (moved >= 0) {
+					return -1;
+				}
+				moved = i;
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * @return true if both slices are of the same dataset and take the same dimensions whole
+	 */
+	private static boolean isSameKind(Key a, Key b) {
+		if (a == null || b == null || a.dataset != b.dataset || a.position.length != b.position.length) {
+			return false;
+		}
+		for (int i = 0; i < a.position.length; i++) {
+			if ((a.position[i] < 0) != (b.position[i] < 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void prefetch() {
+		while (true) {
+			Key key;
+			synchronized (this) {
+				key = wanted.poll();
+				if (key == null) {
+					prefetching = false;
+					return;
+				}
+			}
+			try {
+				Entry entry = read(key);
+				if (entry.slice.getRank() == 2) {
+					entry.getSummary();
+				}
+			} catch (Exception e) {
+				logger.debug("Could not prefetch slice", e);
+			}
+		}
+	}
+
+	/**
+	 * Read slice from dataset and add it to the cache, unless another thread has read it
+	 * while waiting for the dataset. A slice is not cached if there was an invalidation
+	 * while it was read, as it may be of a dataset that is no longer shown
+	 */
+	private Entry read(Key key) {
+		long readGeneration;
+		synchronized (this) {
+			readGeneration = generation;
+		}
+		int[] position = key.position;
+		Slice[] s = new Slice[position.length];
+		int rank = 0;
+		for (int i = 0; i < position.length; i++) {
+			if (position[i] < 0) {
+				s[i] = new Slice(null);
+				rank++;
+			} else {
+				s[i] = new Slice(position[i], position[i] + 1);
+			}
+		}
+
+		Dataset slice;
+		synchronized (key.dataset) {
+			Entry entry;
+			synchronized (this) {
+				entry = slices.get(key);
+			}
+			if (entry != null) {
+				return entry;
+			}
+			slice = (Dataset) key.dataset.getSlice(s);
+		}
+
+		int[] shape = slice.getShape();
+		int[] squeezed = new int[rank];
+		for (int i = 0, j = 0; i < position.length; i++) {
+			if (position[i] < 0) {
+				squeezed[j++] = shape[i];
+			}
+		}
+		slice.setShape(squeezed);
+		return put(key, new Entry(slice), readGeneration);
+	}
+
+	private synchronized Entry put(Key key, Entry entry, long readGeneration) {
+		if (readGeneration != generation) {
+			return entry;
+		}
+		Entry old = slices.get(key);
+		if (old != null) {
+			return old;
+		}
+		slices.put(key, entry);
+		bytes += entry.slice.getNbytes();
+		Iterator<Map.Entry<Key, Entry>> it = slices.entrySet().iterator();
+		while (bytes > MAXIMUM_BYTES && slices.size() > 1) {
+			Map.Entry<Key, Entry> eldest = it.next();
+			bytes -= eldest.getValue().slice.getNbytes();
+			it.remove();
+		}
+		return entry;
+	}
+}
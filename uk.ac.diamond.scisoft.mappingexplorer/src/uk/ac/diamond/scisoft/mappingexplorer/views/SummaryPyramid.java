@@ -0,0 +1,246 @@
+/*-
+ * Copyright © 2011 Diamond Light Source Ltd.
+ *
+ * This file is part of GDA.
+ *
+ * GDA is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License version 3 as published by the Free
+ * Software Foundation.
+ *
+ * GDA is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with GDA. If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.ac.diamond.scisoft.mappingexplorer.views;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
+
+/**
+ * Minimum, maximum, sum and count of tiles of a 2D dataset at several resolutions.
+ * <p>
+ * The finest level has tiles of {@value #TILE} by {@value #TILE} pixels and each coarser
+ * level joins two by two tiles of the one below, up to a single tile. Statistics of a
+ * rectangle are made from the largest tiles that fit inside it, so only pixels in tiles
+ * on its edges are looked at. NaNs are left out of all statistics.
+ */
+public class SummaryPyramid {
+
+	private static final int TILE = 16;
+
+	/**
+	 * Statistics of a region
+	 */
+	public static class Summary {
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private double sum = 0;
+		private long count = 0;
+
+		private void add(double value) {
+			if (Double.isNaN(value)) {
+				return;
+			}
+			if (value < min) {
+				min = value;
+			}
+			if (value > max) {
+				max = value;
+			}
+			sum += value;
+			count++;
+		}
+
+		private void add(Level level, int tile) {
+			if (level.count[tile] == 0) {
+				return;
+			}
+			if (level.min[tile] < min) {
+				min = level.min[tile];
+			}
+			if (level.max[tile] > max) {
+				max = level.max[tile];
+			}
+			sum += level.sum[tile];
+			count += level.count[tile];
+		}
+
+		/**
+		 * @return minimum or NaN if there are no values
+		 */
+		public double getMin() {
+			return count == 0 ? Double.NaN : min;
+		}
+
+		/**
+		 * @return maximum or NaN if there are no values
+		 */
+		public double getMax() {
+			return count == 0 ? Double.NaN : max;
+		}
+
+		public double getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return number of values that are not NaN
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return count == 0 ? Double.NaN : sum / count;
+		}
+	}
+
+	private static class Level {
+		private final int size; // pixels along each side of a tile
+		private final int rows;
+		private final int cols;
+		private final double[] min;
+		private final double[] max;
+		private final double[] sum;
+		private final long[] count;
+
+		public Level(int size, int rows, int cols) {
+			this.size = size;
+			this.rows = rows;
+			this.cols = cols;
+			int n = rows * cols;
+			min = new double[n];
+			max = new double[n];
+			sum = new double[n];
+			count = new long[n];
+		}
+	}
+
+	private final Dataset data;
+	private final int rows;
+	private final int cols;
+	private final List<Level> levels = new ArrayList<Level>();
+
+	/**
+	 * Build summary of dataset, which takes one pass over its values
+	 *
+	 * @param data
+	 *            2D dataset
+	 */
+	public SummaryPyramid(Dataset data) {
+		int[] shape = data.getShape();
+		if (shape.length != 2) {
+			throw new IllegalArgumentException("Dataset must be 2D");
+		}
+		this.data = data;
+		rows = shape[0];
+		cols = shape[1];
+
+		Level level = new Level(TILE, (rows + TILE - 1) / TILE, Math.max(1, (cols + TILE - 1) / TILE));
+		for (int t = 0; t < level.rows * level.cols; t++) {
+			int tr = t / level.cols;
+			int tc = t % level.cols;
+			Summary s = new Summary();
+			scan(s, tr * TILE, Math.min(rows, (tr + 1) * TILE), tc * TILE, Math.min(cols, (tc + 1) * TILE));
+			set(level, t, s);
+		}
+		levels.add(level);
+
+		while (level.rows > 1 || level.cols > 1) {
+			Level up = new Level(2 * level.size, (level.rows + 1) / 2, (level.cols + 1) / 2);
+			for (int tr = 0; tr < up.rows; tr++) {
+				for (int tc = 0; tc < up.cols; tc++) {
+					Summary s = new Summary();
+					for (int r = 2 * tr; r < Math.min(level.rows, 2 * tr + 2); r++) {
+						for (int c = 2 * tc; c < Math.min(level.cols, 2 * tc + 2); c++) {
+							s.add(level, r * level.cols + c);
+						}
+					}
+					set(up, tr * up.cols + tc, s);
+				}
+			}
+			levels.add(up);
+			level = up;
+		}
+	}
+
+	private static void set(Level level, int tile, Summary s) {
+		level.min[tile] = s.min;
+		level.max[tile] = s.max;
+		level.sum[tile] = s.sum;
+		level.count[tile] = s.count;
+	}
+
+	private void scan(Summary s, int r0, int r1, int c0, int c1) {
+		for (int r = r0; r < r1; r++) {
+			for (int c = c0; c < c1; c++) {
+				s.add(data.getDouble(r, c));
+			}
+		}
+	}
+
+	/**
+	 * @return summary of whole dataset
+	 */
+	public Summary getSummary() {
+		return getSummary(0, rows, 0, cols);
+	}
+
+	/**
+	 * Get summary of a rectangle of the dataset, which is clipped to the dataset
+	 *
+	 * @param r0
+	 *            first row
+	 * @param r1
+	 *            row after last
+	 * @param c0
+	 *            first column
+	 * @param c1
+	 *            column after last
+	 * @return summary
+	 */
+	public Summary getSummary(int r0, int r1, int c0, int c1) {
+		Summary s = new Summary();
+		r0 = Math.max(0, r0);
+		c0 = Math.max(0, c0);
+		r1 = Math.min(rows, r1);
+		c1 = Math.min(cols, c1);
+		if (r0 < r1 && c0 < c1) {
+			add(s, levels.size() - 1, 0, 0, r0, r1, c0, c1);
+		}
+		return s;
+	}
+
+	private void add(Summary s, int l, int tr, int tc, int r0, int r1, int c0, int c1) {
+		Level level = levels.get(l);
+		if (tr >= level.rows || tc >= level.cols) {
+			return;
+		}
+		int tr0 = tr * level.size;
+		int tc0 = tc * level.size;
+		int tr1 = Math.min(rows, tr0 + level.size);
+		int tc1 = Math.min(cols, tc0 + level.size);
+		if (tr1 <= r0 || tr0 >= r1 || tc1 <= c0 || tc0 >= c1) {
+			return;
+		}
+		if (r0 <= tr0 && tr1 <= r1 && c0 <= tc0 && tc1 <= c1) {
+			s.add(level, tr * level.cols + tc);
+			return;
+		}
+		if (l == 0) {
+			scan(s, Math.max(r0, tr0), Math.min(r1, tr1), Math.max(c0, tc0), Math.min(c1, tc1));
+			return;
+		}
+		for (int i = 0; i < 2; i++) {
+			for (int j = 0; j < 2; j++) {
+				add(s, l - 1, 2 * tr + i, 2 * tc + j, r0, r1, c0, c1);
+			}
+		}
+	}
+}
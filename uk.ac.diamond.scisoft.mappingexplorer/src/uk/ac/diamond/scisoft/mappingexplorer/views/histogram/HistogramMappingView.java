@@ -55,6 +55,7 @@ import uk.ac.diamond.scisoft.analysis.dataset.function.Histogram;
 import uk.ac.diamond.scisoft.analysis.rcp.editors.HDF5TreeEditor;
 import uk.ac.diamond.scisoft.mappingexplorer.views.IDatasetPlotterContainingView;
 import uk.ac.diamond.scisoft.mappingexplorer.views.IMappingView2dData;
+import uk.ac.diamond.scisoft.mappingexplorer.views.SummaryPyramid.Summary;
 import uk.ac.diamond.scisoft.mappingexplorer.views.twod.TwoDMappingView;
 
 /**
@@ -176,12 +177,14 @@ public class HistogramMappingView extends ViewPart implements IDatasetPlotterCon
 			}
 			if (histSelection != null) {
 				lblHistogram.setText(String.format(LBL_PART_CHANGED, partName));
-				updatePlot(histSelection.getDataset());
+				updatePlot(histSelection);
 			}
 		}
 	};
 
-	private void updatePlot(final IDataset ds) {
+	private void updatePlot(HistogramSelection selection) {
+		final IDataset ds = selection.getDataset();
+		final Summary summary = selection.getSummary();
 		if (getViewSite().getShell().getDisplay() != null && !getViewSite().getShell().getDisplay().isDisposed()) {
 			getViewSite().getShell().getDisplay().asyncExec(new Runnable() {
 
@@ -189,8 +192,16 @@ public class HistogramMappingView extends ViewPart implements IDatasetPlotterCon
 				public void run() {
 					if (ds instanceof Dataset) {
 						Dataset ds1 = (Dataset) ds;
-						int maxValue = ds1.max().intValue();
-						int minValue = ds1.min().intValue();
+						int maxValue;
+						int minValue;
+						if (summary != null && summary.getCount() > 0) {
+							// already known from tiles so avoid a pass over the data
+							maxValue = (int) summary.getMax();
+							minValue = (int) summary.getMin();
+						} else {
+							maxValue = ds1.max().intValue();
+							minValue = ds1.min().intValue();
+						}
 
 						int range = maxValue-minValue+3; //include 1 above and 1 below
 						int numBins = range < NUM_BINS ? range : NUM_BINS;
@@ -296,7 +307,7 @@ public class HistogramMappingView extends ViewPart implements IDatasetPlotterCon
 						}
 						if (histSelection != null) {
 							lblHistogram.setText(String.format(LBL_PART_CHANGED, partName));
-							updatePlot(histSelection.getDataset());
+							updatePlot(histSelection);
 						}
 					}
 
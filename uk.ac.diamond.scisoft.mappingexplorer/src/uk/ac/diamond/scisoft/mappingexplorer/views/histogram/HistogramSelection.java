@@ -6,6 +6,8 @@ package uk.ac.diamond.scisoft.mappingexplorer.views.histogram;
 import org.eclipse.dawnsci.analysis.api.dataset.IDataset;
 import org.eclipse.jface.viewers.ISelection;
 
+import uk.ac.diamond.scisoft.mappingexplorer.views.SummaryPyramid.Summary;
+
 /**
  * @author rsr31645
  * 
@@ -13,6 +15,7 @@ import org.eclipse.jface.viewers.ISelection;
 public class HistogramSelection implements ISelection {
 
 	private final IDataset ds;
+	private final Summary summary;
 
 	/*
 	 * (non-Javadoc)
@@ -25,11 +28,28 @@ public class HistogramSelection implements ISelection {
 	}
 
 	public HistogramSelection(IDataset ds) {
+		this(ds, null);
+	}
+
+	/**
+	 * @param ds
+	 * @param summary
+	 *            statistics of dataset, can be null
+	 */
+	public HistogramSelection(IDataset ds, Summary summary) {
 		this.ds = ds;
+		this.summary = summary;
 	}
 
 	public IDataset getDataset() {
 		return ds;
 	}
 
+	/**
+	 * @return statistics of dataset or null if not known
+	 */
+	public Summary getSummary() {
+		return summary;
+	}
+
 }
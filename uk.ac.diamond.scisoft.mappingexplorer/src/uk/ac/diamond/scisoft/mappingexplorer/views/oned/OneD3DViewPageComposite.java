@@ -21,9 +21,6 @@ import java.util.Arrays;
 import java.util.Iterator;
 
 import org.eclipse.dawnsci.analysis.api.dataset.ILazyDataset;
-import org.eclipse.dawnsci.analysis.api.dataset.Slice;
-import org.eclipse.dawnsci.analysis.api.io.ScanFileHolderException;
-import org.eclipse.dawnsci.analysis.api.monitor.IMonitor;
 import org.eclipse.dawnsci.analysis.dataset.impl.Dataset;
 import org.eclipse.dawnsci.analysis.dataset.impl.DoubleDataset;
 import org.eclipse.dawnsci.plotting.api.IPlottingSystem;
@@ -59,6 +56,7 @@ import uk.ac.diamond.scisoft.mappingexplorer.views.AxisSelection;
 import uk.ac.diamond.scisoft.mappingexplorer.views.BaseViewPageComposite;
 import uk.ac.diamond.scisoft.mappingexplorer.views.IMappingView3dData;
 import uk.ac.diamond.scisoft.mappingexplorer.views.IMappingViewData;
+import uk.ac.diamond.scisoft.mappingexplorer.views.SliceCache;
 import uk.ac.diamond.scisoft.mappingexplorer.views.twod.ITwoDSelection;
 import uk.ac.diamond.scisoft.mappingexplorer.views.twod.ITwoDSelection.IPixelSelection;
 import uk.ac.gda.ui.components.IStepperSelectionListener;
@@ -167,6 +165,10 @@ public class OneD3DViewPageComposite extends BaseViewPageComposite {
 	}
 
 	public void setMappingViewData(IMappingView3dData mappingViewData) {
+		if (this.mappingViewData != null && (mappingViewData == null
+				|| this.mappingViewData.getDataSet() != mappingViewData.getDataSet())) {
+			SliceCache.getInstance().invalidate(this.mappingViewData.getDataSet());
+		}
 		this.mappingViewData = mappingViewData;
 	}
 
@@ -229,6 +231,9 @@ public class OneD3DViewPageComposite extends BaseViewPageComposite {
 	public void dispose() {
 		firstDimStepper.removeStepperSelectionListener(stepperSelectionListener);
 		secondDimStepper.removeStepperSelectionListener(stepperSelectionListener);
+		if (mappingViewData != null) {
+			SliceCache.getInstance().invalidate(mappingViewData.getDataSet());
+		}
 		super.dispose();
 	}
 
@@ -360,8 +365,7 @@ public class OneD3DViewPageComposite extends BaseViewPageComposite {
 			DoubleDataset axisValues = null;
 			try {
 				if (dim1Selection) {
-					slice = (Dataset) dataset.getSlice((IMonitor) null, new Slice(null), new Slice(stepper1Val,
-							stepper1Val + 1), new Slice(stepper2Val, stepper2Val + 1));
+					slice = SliceCache.getInstance().getSlice(dataset, -1, stepper1Val, stepper2Val);
 					finalShape = new int[] { shape[0] };
 
 					xAxislabel = mappingViewData.getDimension1Label();
@@ -370,9 +374,7 @@ public class OneD3DViewPageComposite extends BaseViewPageComposite {
 								new int[]{mappingViewData.getDimension1Values().length});
 					}
 				} else if (dim2Selection) {
-					slice = (Dataset) dataset.getSlice((IMonitor) null,
-							new Slice(stepper1Val, stepper1Val + 1), new Slice(null), new Slice(stepper2Val,
-									stepper2Val + 1));
+					slice = SliceCache.getInstance().getSlice(dataset, stepper1Val, -1, stepper2Val);
 					finalShape = new int[] { shape[1] };
 					xAxislabel = mappingViewData.getDimension2Label();
 					if (mappingViewData.getDimension2Values() != null) {
@@ -380,9 +382,7 @@ public class OneD3DViewPageComposite extends BaseViewPageComposite {
 								new int[]{mappingViewData.getDimension2Values().length});
 					}
 				} else if (dim3Selection) {
-					slice = (Dataset) dataset.getSlice((IMonitor) null,
-							new Slice(stepper1Val, stepper1Val + 1), new Slice(stepper2Val, stepper2Val + 1),
-							new Slice(null));
+					slice = SliceCache.getInstance().getSlice(dataset, stepper1Val, stepper2Val, -1);
 
 					finalShape = new int[] { shape[2] };
 					xAxislabel = mappingViewData.getDimension3Label();
@@ -414,8 +414,6 @@ public class OneD3DViewPageComposite extends BaseViewPageComposite {
 						}
 					});
 				}
-			} catch (ScanFileHolderException ex) {
-				logger.error("Error loading data from file during update", ex);
 			} catch (Exception e) {
 				logger.error("Error getting slice of data", e);
 			}
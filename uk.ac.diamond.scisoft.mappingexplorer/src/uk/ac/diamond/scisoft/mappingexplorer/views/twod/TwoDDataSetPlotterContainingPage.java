@@ -78,6 +78,9 @@ import uk.ac.diamond.scisoft.analysis.axis.AxisValues;
 import uk.ac.diamond.scisoft.analysis.rcp.histogram.HistogramDataUpdate;
 import uk.ac.diamond.scisoft.analysis.rcp.histogram.HistogramUpdate;
 import uk.ac.diamond.scisoft.mappingexplorer.views.AxisSelection;
+import uk.ac.diamond.scisoft.mappingexplorer.views.SliceCache;
+import uk.ac.diamond.scisoft.mappingexplorer.views.SummaryPyramid;
+import uk.ac.diamond.scisoft.mappingexplorer.views.SummaryPyramid.Summary;
 import uk.ac.diamond.scisoft.mappingexplorer.views.BaseViewPageComposite;
 import uk.ac.diamond.scisoft.mappingexplorer.views.IMappingView2dData;
 import uk.ac.diamond.scisoft.mappingexplorer.views.IMappingView3dData;
@@ -646,12 +649,19 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 		}
 	};
 	private Dataset currentSlice;
+	private ILazyDataset currentDataset;
+	private int[] currentPosition; // of slice in 3D dataset, null when dataset is 2D
+	private SummaryPyramid currentSummary; // of current slice before any flip, built when first needed
+	private boolean summaryFlipped;
 
 	@Override
 	public void dispose() {
 		if (!thirdDimensionScaler.isDisposed()) {
 			thirdDimensionScaler.removeStepperSelectionListener(stepperSelectionListener);
 		}
+		if (mapping3DData != null) {
+			SliceCache.getInstance().invalidate(mapping3DData.getDataSet());
+		}
 		super.dispose();
 	}
 
@@ -718,6 +728,10 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 			}
 
 			currentSlice = null;
+			currentDataset = null;
+			currentPosition = null;
+			currentSummary = null;
+			summaryFlipped = false;
 
 			AxisValues xAxisValues = null;
 			AxisValues yAxisValues = null;
@@ -726,12 +740,12 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 
 			if (mapping3DData != null) {
 				ILazyDataset dataset = mapping3DData.getDataSet();
-				int[] shape = dataset.getShape();
+				SliceCache cache = SliceCache.getInstance();
+				currentDataset = dataset;
 
 				if (radio1) {
-					currentSlice = (Dataset) dataset.getSlice(new Slice(scalerValue, scalerValue + 1),
-							new Slice(null), new Slice(null));
-					currentSlice.setShape(shape[1], shape[2]);
+					currentPosition = new int[] { scalerValue, -1, -1 };
+					currentSlice = cache.getSlice(dataset, currentPosition);
 
 					xAxisLabel = mapping3DData.getDimension3Label();
 					yAxisLabel = mapping3DData.getDimension2Label();
@@ -744,9 +758,8 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 					}
 				}
 				if (radio2) {
-					currentSlice = (Dataset) dataset.getSlice(new Slice(null), new Slice(scalerValue,
-							scalerValue + 1), new Slice(null));
-					currentSlice.setShape(shape[0], shape[2]);
+					currentPosition = new int[] { -1, scalerValue, -1 };
+					currentSlice = cache.getSlice(dataset, currentPosition);
 
 					xAxisLabel = mapping3DData.getDimension3Label();
 					yAxisLabel = mapping3DData.getDimension1Label();
@@ -759,9 +772,8 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 					}
 				}
 				if (radio3) {
-					currentSlice = (Dataset) dataset.getSlice(new Slice(null), new Slice(null), new Slice(
-							scalerValue, scalerValue + 1));
-					currentSlice.setShape(shape[0], shape[1]);
+					currentPosition = new int[] { -1, -1, scalerValue };
+					currentSlice = cache.getSlice(dataset, currentPosition);
 
 					xAxisLabel = mapping3DData.getDimension2Label();
 					yAxisLabel = mapping3DData.getDimension1Label();
@@ -784,6 +796,7 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 
 					if (currentSlice != null) {
 						currentSlice = currentSlice.transpose();
+						summaryFlipped = true;
 					}
 				}
 			} else if (mapping2DData != null) {
@@ -875,13 +888,35 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 		return null;
 	}
 
+	/**
+	 * @return summary of current slice, taken from the slice cache if a prefetch has
+	 *         already built one or else built from the slice, or null if there is no slice
+	 */
+	private SummaryPyramid getCurrentSummary() {
+		if (currentSummary == null && currentSlice != null) {
+			if (currentPosition != null) {
+				currentSummary = SliceCache.getInstance().getSummaryIfPresent(currentDataset, currentPosition);
+			}
+			if (currentSummary == null) {
+				currentSummary = new SummaryPyramid(summaryFlipped ? currentSlice.transpose() : currentSlice);
+			}
+		}
+		return currentSummary;
+	}
+
 	protected ISelection getHistogramSelectionDataset() {
 		IDataset slice = null;
+		SummaryPyramid summary = getCurrentSummary();
+		Summary sliceSummary = null;
 		if (areaRegion != null) {
 
 			Point[] rc = getRectangleRegionRoi();
 			if (rc != null) {
 				slice = currentSlice.getSlice(new Slice(rc[0].y, rc[1].y), new Slice(rc[0].x, rc[1].x));
+				if (summary != null) {
+					sliceSummary = summaryFlipped ? summary.getSummary(rc[0].x, rc[1].x, rc[0].y, rc[1].y)
+							: summary.getSummary(rc[0].y, rc[1].y, rc[0].x, rc[1].x);
+				}
 			} else {
 				slice = currentSlice;
 			}
@@ -891,7 +926,10 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 		} else {
 			slice = currentSlice;
 		}
-		return new HistogramSelection(slice);
+		if (slice == currentSlice && summary != null) {
+			sliceSummary = summary.getSummary();
+		}
+		return new HistogramSelection(slice, sliceSummary);
 	}
 
 	@Override
@@ -976,6 +1014,10 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 	}
 
 	public void setMappingViewData(IMappingView2dData mappingViewData) {
+		if (mapping3DData != null && (mappingViewData == null
+				|| mapping3DData.getDataSet() != mappingViewData.getDataSet())) {
+			SliceCache.getInstance().invalidate(mapping3DData.getDataSet());
+		}
 		if (mappingViewData instanceof IMappingView3dData) {
 			mapping3DData = (IMappingView3dData) mappingViewData;
 			mapping2DData = null;
@@ -1023,23 +1065,18 @@ public class TwoDDataSetPlotterContainingPage extends BaseViewPageComposite {
 	protected IDataset getEntireDataSlice() {
 		IDataset slice = null;
 		if (mapping3DData != null) {
-			int[] shape = mapping3DData.getDataSet().getShape();
+			ILazyDataset dataset = mapping3DData.getDataSet();
+			SliceCache cache = SliceCache.getInstance();
 			int thirdDim = thirdDimensionScaler.getSelection();
 			switch (getSelectedRdBtnVal()) {
 			case 1:
-				slice = mapping3DData.getDataSet().getSlice(new Slice(thirdDim, thirdDim + 1), new Slice(null),
-						new Slice(null));
-				slice.setShape(shape[1], shape[2]);
+				slice = cache.getSlice(dataset, thirdDim, -1, -1);
 				break;
 			case 2:
-				slice = mapping3DData.getDataSet().getSlice(new Slice(null), new Slice(thirdDim, thirdDim + 1),
-						new Slice(null));
-				slice.setShape(shape[0], shape[2]);
+				slice = cache.getSlice(dataset, -1, thirdDim, -1);
 				break;
 			case 3:
-				slice = mapping3DData.getDataSet().getSlice(new Slice(null), new Slice(null),
-						new Slice(thirdDim, thirdDim + 1));
-				slice.setShape(shape[0], shape[1]);
+				slice = cache.getSlice(dataset, -1, -1, thirdDim);
 			}
 			if (slice != null) {
 				if (btnFlipAxis.getSelection()) {
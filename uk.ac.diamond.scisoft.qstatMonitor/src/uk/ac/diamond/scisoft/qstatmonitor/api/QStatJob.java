@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package uk.ac.diamond.scisoft.qstatmonitor.api;
+
+import java.util.Arrays;
+
+/**
+ * A job in the queue as listed by qstat. Values are kept as given in the XML, in
+ * the order of the table columns; missing values are empty.
+ */
+public class QStatJob {
+
+	public static final int JOB_NUMBER = 0;
+	public static final int PRIORITY = 1;
+	public static final int NAME = 2;
+	public static final int OWNER = 3;
+	public static final int STATE = 4;
+	public static final int SUBMISSION_TIME = 5;
+	public static final int QUEUE_NAME = 6;
+	public static final int SLOTS = 7;
+	public static final int TASKS = 8;
+
+	/**
+	 * XML tags of values, in order
+	 */
+	static final String[] TAGS = {"JB_job_number", "JAT_prio", "JB_name", "JB_owner", "state",
+			"JB_submission_time", "queue_name", "slots", "tasks"};
+
+	private final String[] values;
+	private final String key;
+
+	QStatJob(String[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null) {
+				values[i] = "";
+			}
+		}
+		this.values = values;
+		// tasks of an array job share the job number
+		key = values[TASKS].isEmpty() ? values[JOB_NUMBER] : values[JOB_NUMBER] + "." + values[TASKS];
+	}
+
+	/**
+	 * @param column
+	 *            one of the column constants
+	 * @return value
+	 */
+	public String get(int column) {
+		return values[column];
+	}
+
+	/**
+	 * @return number of values
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @return key that identifies job between queries
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	public String getState() {
+		return values[STATE];
+	}
+
+	/**
+	 * @return slots used by job, zero if not known
+	 */
+	public int getSlots() {
+		try {
+			return Integer.parseInt(values[SLOTS]);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof QStatJob))
+			return false;
+		return Arrays.equals(values, ((QStatJob) obj).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(values);
+	}
+
+	@Override
+	public String toString() {
+		return key + " " + values[STATE];
+	}
+}
@@ -12,25 +12,159 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class QStatMonitorAPI {
 
-	private static Process process = null;
+	private static final Logger logger = LoggerFactory.getLogger(QStatMonitorAPI.class);
+
+	private static final String XML_HEADER = "<?xml";
+
+	private static final XMLInputFactory factory = XMLInputFactory.newInstance();
 
 	public static void main(String[] args) {
 		// System.out.println(getAbsoluteScriptPath());
 		// getTableLists("qstat", "*");
 	}
 
+	/**
+	 * Starts the script that runs the qstat query. Its output holds the XML and can
+	 * be read with {@link #readJobs(Reader)}; destroying the process stops the query
+	 * 
+	 * @param argument
+	 *            the qstat query
+	 * @param userString
+	 *            the user name pattern to filter the users by in the query
+	 * @return process
+	 * @throws IOException
+	 */
+	public static Process startQuery(String argument, String userString) throws IOException {
+		return startProcess(getAbsoluteScriptPath() + "getQStatXML.sh", argument, userString);
+	}
+
+	private static Process startProcess(String cmd, String argment, String userString) throws IOException {
+		ProcessBuilder processBuilder;
+		if (userString != null && !userString.equals("")) {
+			processBuilder = new ProcessBuilder(cmd, argment, userString);
+		} else {
+			processBuilder = new ProcessBuilder(cmd, argment);
+		}
+
+		processBuilder.redirectErrorStream(true);
+		return processBuilder.start();
+	}
+
+	/**
+	 * Reads the jobs from qstat XML output as it arrives. Anything before the XML
+	 * header is skipped and reading stops at the end of the document
+	 * 
+	 * @param reader
+	 * @return list of jobs in the order given
+	 * @throws IOException
+	 *             if there is no XML
+	 * @throws XMLStreamException
+	 *             if the XML is not valid
+	 */
+	public static List<QStatJob> readJobs(Reader reader) throws IOException, XMLStreamException {
+		final List<QStatJob> jobs = new ArrayList<QStatJob>();
+		// owners, states and queues repeat a lot so share the strings
+		final Map<String, String> strings = new HashMap<String, String>();
+
+		final XMLStreamReader xml = factory.createXMLStreamReader(skipToHeader(reader));
+		try {
+			String[] values = null;
+			int depth = 0;
+			while (xml.hasNext()) {
+				switch (xml.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					final String tag = xml.getLocalName();
+					if (values == null) {
+						if (tag.equals("job_list")) {
+							values = new String[QStatJob.TAGS.length];
+						}
+						depth++;
+						break;
+					}
+					final int i = indexOf(tag);
+					if (i < 0 || values[i] != null) {
+						depth++;
+						break;
+					}
+					final String text = xml.getElementText().trim(); // moves to end of element
+					String shared = strings.get(text);
+					if (shared == null) {
+						strings.put(text, text);
+						shared = text;
+					}
+					values[i] = shared;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					if (values != null && xml.getLocalName().equals("job_list")) {
+						jobs.add(new QStatJob(values));
+						values = null;
+					}
+					if (depth == 0) {
+						return jobs; // ignore anything after document
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		} finally {
+			xml.close();
+		}
+		return jobs;
+	}
+
+	private static int indexOf(String tag) {
+		for (int i = 0; i < QStatJob.TAGS.length; i++) {
+			if (QStatJob.TAGS[i].equals(tag)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param reader
+	 * @return reader positioned at start of XML header
+	 * @throws IOException
+	 *             if there is no XML header
+	 */
+	private static Reader skipToHeader(Reader reader) throws IOException {
+		final PushbackReader in = new PushbackReader(reader, XML_HEADER.length());
+		int matched = 0;
+		while (matched < XML_HEADER.length()) {
+			final int c = in.read();
+			if (c < 0) {
+				throw new IOException("Can not find XML header.");
+			}
+			if (c == XML_HEADER.charAt(matched)) {
+				matched++;
+			} else {
+				matched = c == XML_HEADER.charAt(0) ? 1 : 0;
+			}
+		}
+		in.unread(XML_HEADER.toCharArray());
+		return in;
+	}
+
 	/**
 	 * gets the list of arrays of table items
 	 * 
@@ -42,9 +176,17 @@ public class QStatMonitorAPI {
 	 */
 	public static ArrayList<String>[] getTableLists(String argument,
 			String userString, ArrayList<String>[] lists) {
-		String scriptDir = getAbsoluteScriptPath() + "getQStatXML.sh";
-		return convertXMLToStringArrays(lists,
-				runScriptAndGetOutput(scriptDir, argument, userString));
+		try {
+			final Process process = startQuery(argument, userString);
+			try (Reader reader = new InputStreamReader(process.getInputStream())) {
+				return toStringArrays(lists, readJobs(reader));
+			} finally {
+				process.destroy();
+			}
+		} catch (IOException | XMLStreamException e) {
+			logger.error("Could not read qstat output", e);
+			return null;
+		}
 	}
 
 	/**
@@ -60,32 +202,23 @@ public class QStatMonitorAPI {
 	 */
 	public static String runScriptAndGetOutput(String cmd, String argment,
 			String userString) {
-		String result = "";
+		final StringBuilder result = new StringBuilder();
 
-		ProcessBuilder processBuilder;
-		if (userString != null && !userString.equals("")) {
-			processBuilder = new ProcessBuilder(cmd, argment, userString);
-		} else {
-			processBuilder = new ProcessBuilder(cmd, argment);
-		}
-
-		processBuilder.redirectErrorStream(true);
+		Process process;
 		try {
-			process = processBuilder.start();
+			process = startProcess(cmd, argment, userString);
 		} catch (IOException ioe) {
 			System.out.println(ioe);
 			process = null;
 		}
 
 		if (process != null) {
-			BufferedReader brOut = new BufferedReader(new InputStreamReader(
-					process.getInputStream()));
-			String line = null;
-			try {
+			try (BufferedReader brOut = new BufferedReader(new InputStreamReader(
+					process.getInputStream()))) {
+				String line = null;
 				while ((line = brOut.readLine()) != null) {
-					result += "\n" + line;
+					result.append('\n').append(line);
 				}
-				brOut.close();
 			} catch (IOException ioe) {
 				System.out.println(ioe);
 			}
@@ -94,11 +227,9 @@ public class QStatMonitorAPI {
 		int startOfXmlIndex = result.indexOf("<?xml version='1.0'?");
 		if (startOfXmlIndex == -1) {
 			System.out.println("Can not find XML header.");
-		} else {
-			result = result.substring(startOfXmlIndex);
+			return result.toString();
 		}
-
-		return result;
+		return result.substring(startOfXmlIndex);
 	}
 
 	/**
@@ -112,57 +243,22 @@ public class QStatMonitorAPI {
 	 */
 	public static ArrayList<String>[] convertXMLToStringArrays(
 			ArrayList<String>[] lists, String xmlString) {
-		// ArrayList<String>[] lists = (ArrayList<String>[]) new ArrayList[9];
-		for (int i = 0; i < lists.length; i++) {
-			lists[i] = new ArrayList<String>();
-		}
 		try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory
-					.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			InputSource is = new InputSource(new StringReader(xmlString));
-			Document doc = dBuilder.parse(is);
-			doc.getDocumentElement().normalize();
-
-			NodeList nList = doc.getElementsByTagName("job_list");
-
-			for (int temp = 0; temp < nList.getLength(); temp++) {
-				Node nNode = nList.item(temp);
-				if (nNode.getNodeType() == Node.ELEMENT_NODE) {
-					Element eElement = (Element) nNode;
-					lists[0].add(getTagValue("JB_job_number", eElement));
-					lists[1].add(getTagValue("JAT_prio", eElement));
-					lists[2].add(getTagValue("JB_name", eElement));
-					lists[3].add(getTagValue("JB_owner", eElement));
-					lists[4].add(getTagValue("state", eElement));
-					lists[5].add(getTagValue("JB_submission_time", eElement));
-					lists[6].add(getTagValue("queue_name", eElement));
-					lists[7].add(getTagValue("slots", eElement));
-					lists[8].add(getTagValue("tasks", eElement));
-				}
-			}
-		} catch (Exception e) {
+			return toStringArrays(lists, readJobs(new StringReader(xmlString)));
+		} catch (IOException | XMLStreamException e) {
 			System.out.println("Error parsing XML");
 			return null;
 		}
-
-		return lists;
 	}
 
-	/**
-	 * @param sTag
-	 * @param eElement
-	 * @return
-	 */
-	private static String getTagValue(String sTag, Element eElement) {
-		try {
-			NodeList nlList = eElement.getElementsByTagName(sTag).item(0)
-					.getChildNodes();
-			Node nValue = (Node) nlList.item(0);
-			return nValue.getNodeValue();
-		} catch (NullPointerException e) {
-			return "";
+	private static ArrayList<String>[] toStringArrays(ArrayList<String>[] lists, List<QStatJob> jobs) {
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = new ArrayList<String>(jobs.size());
+			for (QStatJob job : jobs) {
+				lists[i].add(job.get(i));
+			}
 		}
+		return lists;
 	}
 
 	/**
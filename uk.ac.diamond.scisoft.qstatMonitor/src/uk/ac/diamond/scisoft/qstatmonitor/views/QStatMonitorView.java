@@ -8,8 +8,17 @@
  */
 package uk.ac.diamond.scisoft.qstatmonitor.views;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -48,6 +57,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.scisoft.qstatmonitor.Activator;
+import uk.ac.diamond.scisoft.qstatmonitor.api.QStatJob;
 import uk.ac.diamond.scisoft.qstatmonitor.api.QStatMonitorAPI;
 import uk.ac.diamond.scisoft.qstatmonitor.preferences.QStatMonitorPreferenceConstants;
 import uk.ac.diamond.scisoft.qstatmonitor.preferences.QStatMonitorPreferencePage;
@@ -76,15 +86,8 @@ public class QStatMonitorView extends ViewPart {
 			"Tasks"};
 
 	/* Table data */
-	private ArrayList<String> jobNumberList = new ArrayList<String>();
-	private ArrayList<String> priorityList = new ArrayList<String>();
-	private ArrayList<String> jobNameList = new ArrayList<String>();
-	private ArrayList<String> ownerList = new ArrayList<String>();
-	private ArrayList<String> stateList = new ArrayList<String>();
-	private ArrayList<String> submissionTimeList = new ArrayList<String>();
-	private ArrayList<String> queueNameList = new ArrayList<String>();
-	private ArrayList<String> slotsList = new ArrayList<String>();
-	private ArrayList<String> tasksList = new ArrayList<String>();
+	private volatile List<QStatJob> jobs = Collections.emptyList();
+	private final List<QStatJob> shownJobs = new ArrayList<QStatJob>(); // in table item order
 
 	/* Plot data */
 	private ArrayList<Double> timeList = new ArrayList<Double>();
@@ -393,47 +396,41 @@ public class QStatMonitorView extends ViewPart {
 	}
 
 	/**
-	 * Runs QStat query and stores retrieved items in corresponding arrays
+	 * Runs QStat query and stores the jobs it lists. The query output is parsed as it
+	 * is read, and cancelling the job stops the query
 	 */
 	class FetchQStatInfoJob extends Job {
 
-		// QStat data returned as array of lists
-		@SuppressWarnings("unchecked")
-		private final ArrayList<String>[] lists = (ArrayList<String>[]) new ArrayList[9];
+		private volatile Process process;
 
 		public FetchQStatInfoJob() {
 			super("Fetching QStat Info");
 		}
 
-		@SuppressWarnings("deprecation")
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
 			try {
-				Thread fetchTableListsThread = new Thread() {
-					public void run() {
-						QStatMonitorAPI.getTableLists(qStatQuery, userArg, lists);
-					}
-				};
-
-				fetchTableListsThread.start();
-
-				// Loop until thread has retrieved table lists
-				while (fetchTableListsThread.isAlive()) {
-					if (monitor.isCanceled()) {
-						// Temporary fix to immediately end job on cancel request
-						fetchTableListsThread.stop();
-						return Status.CANCEL_STATUS;
-					}
+				process = QStatMonitorAPI.startQuery(qStatQuery, userArg);
+				try (Reader reader = new InputStreamReader(process.getInputStream())) {
+					jobs = QStatMonitorAPI.readJobs(reader);
+				} finally {
+					process.destroy();
+					process = null;
 				}
-
-				assignTableData();
-			} catch (StringIndexOutOfBoundsException e) {
-				return Status.CANCEL_STATUS;
-				// TODO: Not catching invalid queries
-			} catch (NullPointerException npe) {
+			} catch (IOException | XMLStreamException e) {
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				logger.debug("Could not read qstat output", e);
 				displayDescInvalidQuery();
 				return Status.CANCEL_STATUS;
 			}
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
 
 			// Reschedule job if automatic refresh enabled
 			if (refreshOption) {
@@ -443,16 +440,13 @@ public class QStatMonitorView extends ViewPart {
 			return Status.OK_STATUS;
 		}
 
-		private void assignTableData() {
-			jobNumberList = lists[0];
-			priorityList = lists[1];
-			jobNameList = lists[2];
-			ownerList = lists[3];
-			stateList = lists[4];
-			submissionTimeList = lists[5];
-			queueNameList = lists[6];
-			slotsList = lists[7];
-			tasksList = lists[8];
+		@Override
+		protected void canceling() {
+			// Ends the query so the blocked read returns
+			Process p = process;
+			if (p != null) {
+				p.destroy();
+			}
 		}
 
 		/**
@@ -471,8 +465,8 @@ public class QStatMonitorView extends ViewPart {
 	}
 
 	/**
-	 * Removes all current items from the table, then adds the contents of the arrays to
-	 * the relevant columns, then packs the table
+	 * Brings the table up to date with the latest jobs, only changing rows whose jobs
+	 * have changed, then packs the table
 	 */
 	class FillTableJob extends UIJob {
 
@@ -483,9 +477,9 @@ public class QStatMonitorView extends ViewPart {
 		@Override
 		public IStatus runInUIThread(IProgressMonitor monitor) {
 			try {
-				table.removeAll();
-				fillTable();
-				packTable();
+				if (updateTable(jobs)) {
+					packTable();
+				}
 				updateContentDescription();
 			} catch (SWTException e) {
 				return Status.CANCEL_STATUS;
@@ -493,18 +487,79 @@ public class QStatMonitorView extends ViewPart {
 			return Status.OK_STATUS;
 		}
 
-		private void fillTable() {
-			for (int i = 0; i < jobNumberList.size(); i++) {
-				TableItem item = new TableItem(table, SWT.NONE);
-				item.setText(0, jobNumberList.get(i));
-				item.setText(1, priorityList.get(i));
-				item.setText(2, jobNameList.get(i));
-				item.setText(3, ownerList.get(i));
-				item.setText(4, stateList.get(i));
-				item.setText(5, submissionTimeList.get(i));
-				item.setText(6, queueNameList.get(i));
-				item.setText(7, slotsList.get(i));
-				item.setText(8, tasksList.get(i));
+		/**
+		 * Removes rows of jobs that have gone, inserts rows for new jobs and updates the
+		 * text of rows whose jobs have changed. Jobs are matched by key so unchanged
+		 * rows, and their selection, are left alone
+		 * 
+		 * @param jobs
+		 * @return true if any row changed
+		 */
+		private boolean updateTable(List<QStatJob> jobs) {
+			boolean changed = false;
+			table.setRedraw(false);
+			try {
+				Set<String> keys = new HashSet<String>();
+				for (QStatJob job : jobs) {
+					keys.add(job.getKey());
+				}
+				int[] gone = new int[shownJobs.size()];
+				int n = 0;
+				for (int i = 0; i < shownJobs.size(); i++) {
+					if (!keys.contains(shownJobs.get(i).getKey())) {
+						gone[n++] = i;
+					}
+				}
+				if (n > 0) {
+					table.remove(Arrays.copyOf(gone, n));
+					for (int i = n - 1; i >= 0; i--) {
+						shownJobs.remove(gone[i]);
+					}
+					changed = true;
+				}
+
+				// Keys of rows not yet passed
+				Set<String> remaining = new HashSet<String>();
+				for (QStatJob job : shownJobs) {
+					remaining.add(job.getKey());
+				}
+				for (int i = 0; i < jobs.size(); i++) {
+					QStatJob job = jobs.get(i);
+					if (i < shownJobs.size()) {
+						QStatJob old = shownJobs.get(i);
+						if (old.getKey().equals(job.getKey()) || remaining.contains(job.getKey())) {
+							// Same job, or job has moved so row is reused
+							remaining.remove(old.getKey());
+							if (!old.equals(job)) {
+								setItemText(table.getItem(i), old, job);
+								shownJobs.set(i, job);
+								changed = true;
+							}
+							continue;
+						}
+					}
+					setItemText(new TableItem(table, SWT.NONE, i), null, job);
+					shownJobs.add(i, job);
+					changed = true;
+				}
+
+				if (shownJobs.size() > jobs.size()) {
+					table.remove(jobs.size(), shownJobs.size() - 1);
+					shownJobs.subList(jobs.size(), shownJobs.size()).clear();
+					changed = true;
+				}
+			} finally {
+				table.setRedraw(true);
+			}
+			return changed;
+		}
+
+		private void setItemText(TableItem item, QStatJob old, QStatJob job) {
+			for (int i = 0; i < job.size(); i++) {
+				String text = job.get(i);
+				if (old == null || !old.get(i).equals(text)) {
+					item.setText(i, text);
+				}
 			}
 		}
 
@@ -522,7 +577,7 @@ public class QStatMonitorView extends ViewPart {
 		 * Updates content description to show number of tasks displayed in the table
 		 */
 		private void updateContentDescription() {
-			int numItems = jobNumberList.size();
+			int numItems = shownJobs.size();
 			if (numItems == 1) {
 				setContentDescription("Showing 1 task.");
 			} else {
@@ -556,16 +611,16 @@ public class QStatMonitorView extends ViewPart {
 			int suspended = 0;
 			int running = 0;
 			int queued = 0;
-			for (int i = 0; i < jobNumberList.size(); i++) {
-				if (stateList.get(i).equalsIgnoreCase("s")) {
-					suspended += Integer.parseInt(slotsList.get(i));
+			for (QStatJob job : jobs) {
+				String state = job.getState();
+				if (state.equalsIgnoreCase("s")) {
+					suspended += job.getSlots();
 				} else {
-					if (stateList.get(i).equalsIgnoreCase("r")) {
-						running += Integer.parseInt(slotsList.get(i));
+					if (state.equalsIgnoreCase("r")) {
+						running += job.getSlots();
 					} else {
-						if (stateList.get(i).contains("q")
-								|| stateList.get(i).contains("Q")) {
-							queued += Integer.parseInt(slotsList.get(i));
+						if (state.contains("q") || state.contains("Q")) {
+							queued += job.getSlots();
 						}
 					}
 				}
@@ -0,0 +1,111 @@
+package uk.ac.diamond.scisoft.rp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+import uk.ac.diamond.scisoft.rp.api.tasks.RenderJob;
+
+/**
+ * Watches the output folder of render jobs and calls {@link #filesChanged(List)} as
+ * soon as frames land in it. A file is only reported once its size and modification
+ * time have stayed the same between two looks, so frames still being written are
+ * not shown half finished.
+ * <p>
+ * The folder is watched while any render job is waiting or running, and for a while
+ * after, as tasks sent to the cluster return before their frames are written. There
+ * is always a last call to {@link #filesChanged(List)} when watching stops.
+ */
+public abstract class FolderWatcherThread extends Thread {
+
+	private static final long POLL_INTERVAL = 1000;
+	private static final long IDLE_TIMEOUT = 60000;
+
+	private final File folder;
+	private volatile boolean runCondition = true;
+
+	private final Map<String, Long> reported = new HashMap<String, Long>();
+	private Map<String, Long> lastScan = new HashMap<String, Long>();
+
+	/**
+	 * @param folder folder to watch, may be null in which case only the last call is made
+	 */
+	public FolderWatcherThread(String name, File folder) {
+		super(name);
+		this.folder = folder;
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+		reported.putAll(scan()); // files already there are not new
+		long lastChange = System.currentTimeMillis();
+		while (runCondition) {
+			try {
+				Thread.sleep(POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				break;
+			}
+			List<File> changed = findChanged();
+			if (!changed.isEmpty()) {
+				lastChange = System.currentTimeMillis();
+				if (runCondition) {
+					filesChanged(changed);
+				}
+			} else if (!isRendering() && System.currentTimeMillis() - lastChange > IDLE_TIMEOUT) {
+				break;
+			}
+		}
+		if (runCondition) {
+			filesChanged(findChanged());
+		}
+	}
+
+	/**
+	 * Called from this thread with files that are new or rewritten since the last call
+	 * @param files may be empty on the last call
+	 */
+	protected abstract void filesChanged(List<File> files);
+
+	private List<File> findChanged() {
+		Map<String, Long> scan = scan();
+		List<File> changed = new ArrayList<File>();
+		for (Map.Entry<String, Long> e : scan.entrySet()) {
+			String name = e.getKey();
+			Long stamp = e.getValue();
+			if (stamp.equals(lastScan.get(name)) && !stamp.equals(reported.get(name))) {
+				reported.put(name, stamp);
+				changed.add(new File(folder, name));
+			}
+		}
+		lastScan = scan;
+		return changed;
+	}
+
+	private Map<String, Long> scan() {
+		Map<String, Long> scan = new HashMap<String, Long>();
+		File[] files = folder == null ? null : folder.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.isFile()) {
+					scan.put(f.getName(), f.lastModified() * 31 + f.length());
+				}
+			}
+		}
+		return scan;
+	}
+
+	private static boolean isRendering() {
+		return Job.getJobManager().find(RenderJob.FAMILY).length > 0;
+	}
+
+	public void stopThread() {
+		runCondition = false;
+		interrupt();
+	}
+
+}
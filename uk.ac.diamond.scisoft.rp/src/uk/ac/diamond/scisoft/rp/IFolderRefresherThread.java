@@ -1,59 +1,46 @@
 package uk.ac.diamond.scisoft.rp;
 
+import java.io.File;
+import java.util.List;
+
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 
-public class IFolderRefresherThread extends Thread {
+public class IFolderRefresherThread extends FolderWatcherThread {
 
 	private final IFolder ifolder;
-	private boolean runCondition = true;
 	private static IFolderRefresherThread CURRENT_THREAD;
 
 	public IFolderRefresherThread(IFolder ifolder) {
+		super("Refreshing " + ifolder.getName(), getFile(ifolder));
 		this.ifolder = ifolder;
 	}
 
+	private static File getFile(IFolder ifolder) {
+		IPath location = ifolder.getLocation();
+		return location == null ? null : location.toFile();
+	}
+
 	@Override
 	public void run() {
-		if (IFolderRefresherThread.CURRENT_THREAD == null) {
-			IFolderRefresherThread.CURRENT_THREAD = this;
-		} else {
-			if (IFolderRefresherThread.CURRENT_THREAD.isAlive()) {
-				IFolderRefresherThread.CURRENT_THREAD.stopThread();
+		synchronized (IFolderRefresherThread.class) {
+			if (CURRENT_THREAD != null && CURRENT_THREAD.isAlive()) {
+				CURRENT_THREAD.stopThread();
 			}
-			IFolderRefresherThread.CURRENT_THREAD = this;
-		}
-		byte i = 0;
-		while (i < 4 && runCondition) {
-			try {
-				Thread.sleep(10000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			refreshIFolder();
-			i++;
-		}
-		try {
-			Thread.sleep(25000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			CURRENT_THREAD = this;
 		}
-		refreshIFolder();
+		super.run();
 	}
 
-	private void refreshIFolder() {
-		if (runCondition) {
-			try {
-				ifolder.refreshLocal(IResource.DEPTH_INFINITE, null);
-			} catch (CoreException e) {
-				e.printStackTrace();
-			}
+	@Override
+	protected void filesChanged(List<File> files) {
+		try {
+			ifolder.refreshLocal(IResource.DEPTH_INFINITE, null);
+		} catch (CoreException e) {
+			e.printStackTrace();
 		}
 	}
 
-	public void stopThread() {
-		runCondition = false;
-	}
-
 }
@@ -1,6 +1,9 @@
 package uk.ac.diamond.scisoft.rp;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -8,11 +11,10 @@ import org.eclipse.ui.progress.UIJob;
 import uk.ac.diamond.scisoft.analysis.rcp.views.ImageExplorerView;
 import uk.ac.diamond.scisoft.rp.api.AvizoImageUtils;
 
-public class ImageExplorerRefresherThread extends Thread {
+public class ImageExplorerRefresherThread extends FolderWatcherThread {
 
 	private final ImageExplorerView ieView;
 	private final String folder;
-	private boolean runCondition = true;
 	private static ImageExplorerRefresherThread CURRENT_THREAD;
 
 	private final UIJob j = new UIJob("Updating Image Explorer") {
@@ -20,62 +22,39 @@ public class ImageExplorerRefresherThread extends Thread {
 		public IStatus runInUIThread(IProgressMonitor monitor) {
 			ArrayList<String> createdImages = AvizoImageUtils
 					.getFilesInFolderAbsolute(folder);
-			System.out.println("refreshing");
 			if (!createdImages.isEmpty()) {
 				ieView.setLocationText(folder);
 				ieView.setDirPath(folder);
 				ieView.pushSelectedFiles(createdImages);				
 				ieView.update(ImageExplorerView.FOLDER_UPDATE_MARKER,
 						createdImages);
-				System.out.println("here");
 			}
 			return Status.OK_STATUS;
 		}
 	};
 
 	public ImageExplorerRefresherThread(ImageExplorerView ieView, String folder) {
+		super("Refreshing Image Explorer", new File(folder));
 		this.ieView = ieView;
 		this.folder = folder;
 	}
 
 	@Override
 	public void run() {
-		if (ImageExplorerRefresherThread.CURRENT_THREAD == null) {
-			ImageExplorerRefresherThread.CURRENT_THREAD = this;
-		} else {
-			if (ImageExplorerRefresherThread.CURRENT_THREAD.isAlive()) {
-				ImageExplorerRefresherThread.CURRENT_THREAD.stopThread();
-			}
-			ImageExplorerRefresherThread.CURRENT_THREAD = this;
-		}
-		byte i = 0;
-		while (i < 15 && runCondition) {
-			refreshIE();
-			try {
-				Thread.sleep(4000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+		synchronized (ImageExplorerRefresherThread.class) {
+			if (CURRENT_THREAD != null && CURRENT_THREAD.isAlive()) {
+				CURRENT_THREAD.stopThread();
 			}
-			refreshIE();
-			i++;
-		}
-		try {
-			Thread.sleep(25000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			CURRENT_THREAD = this;
 		}
-		refreshIE();
+		super.run();
 	}
 
-	private void refreshIE() {
+	@Override
+	protected void filesChanged(List<File> files) {
+		// frames landing close together are shown in one update
 		j.cancel();
-		if (runCondition) {
-			j.schedule();
-		}
-	}
-
-	public void stopThread() {
-		runCondition = false;
+		j.schedule(100);
 	}
 
 }
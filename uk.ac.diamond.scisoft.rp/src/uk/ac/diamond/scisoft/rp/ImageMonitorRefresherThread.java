@@ -1,53 +1,38 @@
 package uk.ac.diamond.scisoft.rp;
 
+import java.io.File;
+import java.util.List;
+
 import org.dawb.common.ui.views.ImageMonitorView;
 
-public class ImageMonitorRefresherThread extends Thread {
+public class ImageMonitorRefresherThread extends FolderWatcherThread {
 
 	private final ImageMonitorView im;
-	private boolean runCondition = true;
 	private static ImageMonitorRefresherThread CURRENT_THREAD;
 
-	public ImageMonitorRefresherThread(ImageMonitorView imageMonitorView) {
+	/**
+	 * @param imageMonitorView
+	 * @param folder folder shown in the image monitor
+	 */
+	public ImageMonitorRefresherThread(ImageMonitorView imageMonitorView, String folder) {
+		super("Refreshing Image Monitor", folder == null ? null : new File(folder));
 		this.im = imageMonitorView;
 	}
 
 	@Override
 	public void run() {
-		if (ImageMonitorRefresherThread.CURRENT_THREAD == null) {
-			ImageMonitorRefresherThread.CURRENT_THREAD = this;
-		} else {
-			if (ImageMonitorRefresherThread.CURRENT_THREAD.isAlive()) {
-				ImageMonitorRefresherThread.CURRENT_THREAD.stopThread();
-			}
-			ImageMonitorRefresherThread.CURRENT_THREAD = this;
-		}
-		byte i = 0;
-		while (i < 6) {
-			try {
-				Thread.sleep(8000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+		synchronized (ImageMonitorRefresherThread.class) {
+			if (CURRENT_THREAD != null && CURRENT_THREAD.isAlive()) {
+				CURRENT_THREAD.stopThread();
 			}
-			refreshIM();
-			i++;
-		}
-		try {
-			Thread.sleep(25000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			CURRENT_THREAD = this;
 		}
-		refreshIM();
+		super.run();
 	}
 
-	private void refreshIM() {
-		if (runCondition) {
-			im.refreshAll();
-		}
-	}
-
-	public void stopThread() {
-		runCondition = false;
+	@Override
+	protected void filesChanged(List<File> files) {
+		im.refreshAll();
 	}
 
 }
@@ -24,6 +24,7 @@ public class Render3DInitializer extends AbstractPreferenceInitializer {
 		store.setDefault(Render3DPreferencePage.centZ,  "0");				
 		store.setDefault(Render3DPreferencePage.openInIm,  true);	
 		store.setDefault(Render3DPreferencePage.openInIe,  false);					
+		store.setDefault(Render3DPreferencePage.renderSlots,  2);
 	}
 
 }
@@ -37,6 +37,7 @@ public class Render3DPreferencePage extends FieldEditorPreferencePage implements
 	
 	public static final String remote = "uk.ac.diamond.scisoft.rp.Preferences.remote";
 	public static final String sshNode = "uk.ac.diamond.scisoft.rp.Preferences.sshNode";
+	public static final String renderSlots = "uk.ac.diamond.scisoft.rp.Preferences.renderSlots";
 
 	private Combo remoteDropDown;
 	private StringFieldEditor sshNodeField;
@@ -198,6 +199,14 @@ public class Render3DPreferencePage extends FieldEditorPreferencePage implements
 			sshNodeField.setEnabled(false, getFieldEditorParent());
 		}
 		addField(sshNodeField);
+
+		final IntegerFieldEditor renderSlotsField = new IntegerFieldEditor(
+				renderSlots, "Render tasks run at once", getFieldEditorParent());
+		renderSlotsField.setValidRange(1, 64);
+		addField(renderSlotsField);
+		renderSlotsField.getTextControl(getFieldEditorParent())
+				.setToolTipText(
+						"The number of render tasks submitted at the same time, further tasks wait for one to finish.");
 	}
 
 	
@@ -12,8 +12,6 @@ import java.util.List;
  */
 public class ScriptUtils {
 
-	private static Process process = null;
-
 	// used for testing
 	public static void main(String[] args) {
 		System.out.println(getAbsoluteScriptPath());		
@@ -109,36 +107,80 @@ public class ScriptUtils {
 	}
 
 
+	/**
+	 * Receives lines written by a script as they are written
+	 */
+	public interface IScriptOutputListener {
+		public void outputLine(String line);
+	}
+
+	private static final IScriptOutputListener SYSTEM_OUT = new IScriptOutputListener() {
+		@Override
+		public void outputLine(String line) {
+			System.out.println(line);
+		}
+	};
+
 	/**
 	 * Runs given command and writes output to System.out.println
 	 * @param list the list of commands, where the first item is usualy the file to be run and all subsequent items are the arguments 
 	 */
 	public static void runScript(List<String> list) {
+		runScript(list, null);
+	}
 
-		ProcessBuilder processBuilder = new ProcessBuilder(list);
+	/**
+	 * Runs given command and waits for it to finish. Its output is read on a separate thread and
+	 * passed on a line at a time as it is written, so a script that writes a lot cannot stall
+	 * @param list the list of commands, where the first item is usualy the file to be run and all subsequent items are the arguments
+	 * @param listener receives output, or null to write it to System.out
+	 * @return exit value of script, or -1 if it could not be run
+	 */
+	public static int runScript(List<String> list, IScriptOutputListener listener) {
+		final IScriptOutputListener out = listener == null ? SYSTEM_OUT : listener;
 
+		ProcessBuilder processBuilder = new ProcessBuilder(list);
 		processBuilder.redirectErrorStream(true);
+		final Process process;
 		try {
 			process = processBuilder.start();
 		} catch (IOException ioe) {
-			System.out.println(ioe);
-			process = null;
+			out.outputLine(ioe.toString());
+			return -1;
 		}
 
-		if (process != null) {
-			BufferedReader brOut = new BufferedReader(new InputStreamReader(
-					process.getInputStream()));
-			String line = null;
-			try {
-				while ((line = brOut.readLine()) != null) {
-					System.out.println(line);
+		Thread pump = new Thread("Render script output") {
+			@Override
+			public void run() {
+				BufferedReader brOut = new BufferedReader(new InputStreamReader(
+						process.getInputStream()));
+				try {
+					String line;
+					while ((line = brOut.readLine()) != null) {
+						out.outputLine(line);
+					}
+				} catch (IOException ioe) {
+					out.outputLine(ioe.toString());
+				} finally {
+					try {
+						brOut.close();
+					} catch (IOException e) {
+					}
 				}
-				brOut.close();
-			} catch (IOException ioe) {
-				System.out.println(ioe);
 			}
-		}
+		};
+		pump.setDaemon(true);
+		pump.start();
 
+		try {
+			int exitValue = process.waitFor();
+			pump.join();
+			return exitValue;
+		} catch (InterruptedException e) {
+			process.destroy();
+			Thread.currentThread().interrupt();
+			return -1;
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -11,7 +11,7 @@ public class LocalTaskHandler extends TaskHandler {
 			System.out.println("Task has already been submitted");
 			return;
 		}		
-		ScriptUtils.runScript(task.getParameterList());
+		ScriptUtils.runScript(task.getParameterList(), outputListener);
 		task.setTaskAsSubmitted();
 	}
 }
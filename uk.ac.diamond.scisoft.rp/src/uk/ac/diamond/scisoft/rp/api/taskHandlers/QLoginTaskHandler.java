@@ -28,7 +28,7 @@ public class QLoginTaskHandler extends TaskHandler {
 
 		list.add(0, mainScriptDir);
 
-		ScriptUtils.runScript(list);
+		ScriptUtils.runScript(list, outputListener);
 		task.setTaskAsSubmitted();
 
 	}
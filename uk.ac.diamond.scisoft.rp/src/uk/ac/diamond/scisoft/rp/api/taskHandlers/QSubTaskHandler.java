@@ -21,7 +21,7 @@ public class QSubTaskHandler extends TaskHandler {
 
 		list.add(0, mainScriptDir);
 
-		ScriptUtils.runScript(list);
+		ScriptUtils.runScript(list, outputListener);
 
 		task.setTaskAsSubmitted();
 
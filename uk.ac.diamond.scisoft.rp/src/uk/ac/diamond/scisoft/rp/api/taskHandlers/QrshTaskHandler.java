@@ -28,7 +28,7 @@ public class QrshTaskHandler extends TaskHandler {
 
 		list.add(0, mainScriptDir);
 
-		ScriptUtils.runScript(list);
+		ScriptUtils.runScript(list, outputListener);
 		task.setTaskAsSubmitted();
 
 	}
@@ -45,7 +45,7 @@ public class SSHTaskHandler extends TaskHandler {
 		list.add(1, go);
 		list.add(2, this.NODE);
 
-		ScriptUtils.runScript(list);
+		ScriptUtils.runScript(list, outputListener);
 		task.setTaskAsSubmitted();
 
 	}
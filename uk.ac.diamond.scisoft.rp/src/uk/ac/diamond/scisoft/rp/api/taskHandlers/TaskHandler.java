@@ -1,9 +1,18 @@
 package uk.ac.diamond.scisoft.rp.api.taskHandlers;
 
+import uk.ac.diamond.scisoft.rp.api.ScriptUtils.IScriptOutputListener;
 import uk.ac.diamond.scisoft.rp.api.tasks.ITask;
 
 public class TaskHandler implements ITaskHandler{
 	
+	protected IScriptOutputListener outputListener;
+
+	/**
+	 * @param listener receives output of submitted scripts as it is written, or null for System.out
+	 */
+	public void setOutputListener(IScriptOutputListener listener) {
+		this.outputListener = listener;
+	}
 
 	@Override
 	public void initialiseRemoteModules() {		
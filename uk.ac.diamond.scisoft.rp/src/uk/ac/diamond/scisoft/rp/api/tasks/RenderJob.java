@@ -10,7 +10,10 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.ui.PlatformUI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.ac.diamond.scisoft.rp.Render3DPreferencePage;
+import uk.ac.diamond.scisoft.rp.api.ScriptUtils.IScriptOutputListener;
 import uk.ac.diamond.scisoft.rp.api.taskHandlers.LocalTaskHandler;
 import uk.ac.diamond.scisoft.rp.api.taskHandlers.QLoginTaskHandler;
 import uk.ac.diamond.scisoft.rp.api.taskHandlers.QSubTaskHandler;
@@ -18,11 +21,25 @@ import uk.ac.diamond.scisoft.rp.api.taskHandlers.QrshTaskHandler;
 import uk.ac.diamond.scisoft.rp.api.taskHandlers.SSHTaskHandler;
 import uk.ac.diamond.scisoft.rp.api.taskHandlers.TaskHandler;
 
+/**
+ * Submits a render task with the task handler chosen in the preferences. Jobs wait
+ * for a slot from the {@link RenderScheduler} so only the configured number of
+ * tasks run at once, and script output is shown as the job's progress.
+ */
 public class RenderJob extends Job {
 
+	private static final Logger logger = LoggerFactory.getLogger(RenderJob.class);
+
+	/**
+	 * Family of all render jobs
+	 */
+	public static final Object FAMILY = RenderJob.class;
+
 	private Task task;
 	private IPreferenceStore store;
 	private IFolder ifolder;
+	private final Object runnerLock = new Object();
+	private Thread runner; // guarded by runnerLock
 
 	public RenderJob(String name) {
 		super(name);
@@ -36,34 +53,73 @@ public class RenderJob extends Job {
 	}
 
 	@Override
-	protected IStatus run(IProgressMonitor monitor) {
-		TaskHandler th;
+	public boolean belongsTo(Object family) {
+		return family == FAMILY;
+	}
+
+	@Override
+	protected IStatus run(final IProgressMonitor monitor) {
+		if (!RenderScheduler.getInstance().acquire(store.getInt(Render3DPreferencePage.renderSlots), monitor)) {
+			return Status.CANCEL_STATUS;
+		}
+		monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
+		try {
+			TaskHandler th = createTaskHandler();
+			th.setOutputListener(new IScriptOutputListener() {
+				@Override
+				public void outputLine(String line) {
+					logger.debug("{}", line);
+					monitor.subTask(line);
+				}
+			});
+			synchronized (runnerLock) {
+				runner = Thread.currentThread();
+			}
+			th.submitTask(task);
+		} finally {
+			// under the lock so canceling cannot interrupt the thread after it is cleared
+			synchronized (runnerLock) {
+				runner = null;
+				Thread.interrupted(); // clear interrupt from canceling
+			}
+			RenderScheduler.getInstance().release();
+			monitor.done();
+		}
+		if (monitor.isCanceled()) {
+			return Status.CANCEL_STATUS;
+		}
+		refreshIFolder();
+		refreshIM();
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Stops the submitting script, which is destroyed when its thread is interrupted
+	 */
+	@Override
+	protected void canceling() {
+		synchronized (runnerLock) {
+			if (runner != null) {
+				runner.interrupt();
+			}
+		}
+	}
 
+	private TaskHandler createTaskHandler() {
 		switch (store.getInt(Render3DPreferencePage.remote)) {
 		case 0:
-			th = new LocalTaskHandler();
-			break;
+			return new LocalTaskHandler();
 		case 1:
-			th = new SSHTaskHandler(true, store.getString(Render3DPreferencePage.sshNode));
-			break;
+			return new SSHTaskHandler(true, store.getString(Render3DPreferencePage.sshNode));
 		case 2:
-			th = new QSubTaskHandler();
-			break;
+			return new QSubTaskHandler();
 		case 3:
-			th = new QLoginTaskHandler();
-			break;
+			return new QLoginTaskHandler();
 		case 4:
-			th = new QrshTaskHandler();
-			break;
+			return new QrshTaskHandler();
 		default:
-			th = new LocalTaskHandler();
-			break;
+			return new LocalTaskHandler();
 		}
-
-		th.submitTask(task);
-		refreshIFolder();
-		refreshIM();
-		return Status.OK_STATUS;
 	}
 
 	private void refreshIM() {
@@ -0,0 +1,62 @@
+package uk.ac.diamond.scisoft.rp.api.tasks;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Limits how many render tasks are submitted at once. Render jobs take a slot before
+ * submitting their task and give it back when the task handler returns, so several
+ * tasks run side by side but a batch of jobs does not start every renderer together.
+ */
+public class RenderScheduler {
+
+	private static final RenderScheduler INSTANCE = new RenderScheduler();
+
+	private int running = 0;
+
+	private RenderScheduler() {
+	}
+
+	public static RenderScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Waits for a free slot and takes it
+	 * @param slots number of tasks allowed to run at once
+	 * @param monitor checked while waiting, may be null
+	 * @return true if a slot was taken, false if cancelled while waiting
+	 */
+	public synchronized boolean acquire(int slots, IProgressMonitor monitor) {
+		slots = Math.max(1, slots);
+		while (running >= slots) {
+			if (monitor != null && monitor.isCanceled()) {
+				return false;
+			}
+			try {
+				wait(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		running++;
+		return true;
+	}
+
+	/**
+	 * Gives back a slot taken by {@link #acquire(int, IProgressMonitor)}
+	 */
+	public synchronized void release() {
+		if (running > 0) {
+			running--;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * @return number of tasks running
+	 */
+	public synchronized int getRunning() {
+		return running;
+	}
+}
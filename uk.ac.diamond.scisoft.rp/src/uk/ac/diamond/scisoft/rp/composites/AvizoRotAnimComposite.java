@@ -305,7 +305,7 @@ public class AvizoRotAnimComposite extends Composite {
 									.getPage().showView(ImageMonitorView.ID);
 							File file = new File(outputLocationText.getText());
 							view.setDirectoryPath(file.getParent());
-							new ImageMonitorRefresherThread(view).start();
+							new ImageMonitorRefresherThread(view, file.getParent()).start();
 						} catch (PartInitException e1) {
 							e1.printStackTrace();
 						}
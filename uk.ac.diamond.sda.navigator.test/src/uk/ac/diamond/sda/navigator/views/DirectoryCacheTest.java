@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DirectoryCacheTest {
+
+	private static class Event implements WatchEvent<Path> {
+		private final Kind<Path> kind;
+		private final Path context;
+
+		Event(Kind<Path> kind, Path context) {
+			this.kind    = kind;
+			this.context = context;
+		}
+
+		@Override
+		public Kind<Path> kind() {
+			return kind;
+		}
+
+		@Override
+		public int count() {
+			return 1;
+		}
+
+		@Override
+		public Path context() {
+			return context;
+		}
+	}
+
+	@Test
+	public void testSearch() {
+		final Path dir = Paths.get("testfiles");
+		final List<Path> paths = new ArrayList<Path>();
+		paths.add(dir.resolve("b"));
+		paths.add(dir.resolve("d"));
+		paths.add(dir.resolve("f"));
+		assertEquals(1,  DirectoryCache.search(paths, 0, 3, "d"));
+		assertEquals(-1, DirectoryCache.search(paths, 0, 3, "a"));
+		assertEquals(-3, DirectoryCache.search(paths, 0, 3, "e"));
+		assertEquals(-4, DirectoryCache.search(paths, 1, 3, "g"));
+	}
+
+	@Test
+	public void testUpdatedListing() throws Exception {
+		final Path dir = Files.createTempDirectory("DirectoryCacheTest");
+		final Path sub = Files.createDirectory(dir.resolve("m"));
+		final Path b   = Files.createFile(dir.resolve("b"));
+		final DirectoryCache cache = new DirectoryCache(new DirectoryCache.Listener() {
+			@Override
+			public void directoryChanged(Path d, int size) {
+			}
+		});
+		try {
+			final List<Path> paths = new ArrayList<Path>();
+			paths.add(sub);
+			paths.add(b);
+			cache.put(dir, paths, 1, true, null, null, null);
+			assertTrue(cache.contains(dir));
+			assertEquals(paths, cache.get(dir));
+
+			final Path a = Files.createFile(dir.resolve("a"));
+			final Path c = Files.createDirectory(dir.resolve("c"));
+			Files.delete(b);
+
+			// events as the watcher would see them, applied directly so the test does not wait on the watch service
+			final List<WatchEvent<?>> events = new ArrayList<WatchEvent<?>>();
+			events.add(new Event(StandardWatchEventKinds.ENTRY_CREATE, a.getFileName()));
+			events.add(new Event(StandardWatchEventKinds.ENTRY_CREATE, c.getFileName()));
+			events.add(new Event(StandardWatchEventKinds.ENTRY_DELETE, b.getFileName()));
+			assertTrue(cache.update(dir, events));
+
+			List<Path> expected = new ArrayList<Path>();
+			expected.add(c);
+			expected.add(sub);
+			expected.add(a);
+			assertEquals(expected, cache.get(dir));
+
+			assertTrue(cache.remove(dir));
+			assertFalse(cache.remove(dir));
+			assertNull(cache.get(dir));
+		} finally {
+			cache.dispose();
+			for (String name : new String[] {"a", "b", "c", "m"}) {
+				Files.deleteIfExists(dir.resolve(name));
+			}
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.decorator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Attributes of files shown by the navigator decorators, shared between them.
+ * <p>
+ * Owner and permissions are read with one POSIX attribute read per file instead of
+ * running ls. Access to files owned by someone else is checked with the file system.
+ * They are kept until the file's modification time or size changes, which costs one
+ * stat per lookup. Decorators run in the workbench decoration thread so none of this
+ * happens in the UI thread.
+ */
+class FileAttributesCache {
+
+	private static final int MAXIMUM_SIZE = 20000;
+
+	private static final String USER = System.getProperty("user.name");
+
+	static class Attributes {
+		final long    lastModified;
+		final long    size;
+		final String  owner;
+		final boolean readable;
+		final boolean writable;
+		final boolean executable;
+
+		Attributes(long lastModified, long size, String owner, boolean readable, boolean writable, boolean executable) {
+			this.lastModified = lastModified;
+			this.size         = size;
+			this.owner        = owner;
+			this.readable     = readable;
+			this.writable     = writable;
+			this.executable   = executable;
+		}
+	}
+
+	private static final Map<Path, Attributes> cache = new LinkedHashMap<Path, Attributes>(1024, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, Attributes> eldest) {
+			return size() > MAXIMUM_SIZE;
+		}
+	};
+
+	private FileAttributesCache() {
+	}
+
+	/**
+	 * @param file
+	 * @return attributes of file or null if it cannot be read
+	 */
+	static Attributes get(File file) {
+		final Path path = file.toPath();
+		final BasicFileAttributes basic;
+		try {
+			basic = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			synchronized (cache) {
+				cache.remove(path);
+			}
+			return null;
+		}
+		final long lastModified = basic.lastModifiedTime().toMillis();
+
+		synchronized (cache) {
+			final Attributes attrs = cache.get(path);
+			if (attrs != null && attrs.lastModified == lastModified && attrs.size == basic.size()) return attrs;
+		}
+
+		final Attributes attrs = read(file, lastModified, basic.size());
+		synchronized (cache) {
+			cache.put(path, attrs);
+		}
+		return attrs;
+	}
+
+	private static Attributes read(File file, long lastModified, long size) {
+		try {
+			final PosixFileAttributes posix = Files.readAttributes(file.toPath(), PosixFileAttributes.class);
+			final String owner = posix.owner().getName();
+			final Set<PosixFilePermission> perms = posix.permissions();
+			if (owner.equals(USER)) {
+				return new Attributes(lastModified, size, owner,
+						perms.contains(PosixFilePermission.OWNER_READ),
+						perms.contains(PosixFilePermission.OWNER_WRITE),
+						perms.contains(PosixFilePermission.OWNER_EXECUTE));
+			}
+			// group membership, root and ACLs are only known to the file system so ask it
+			final Path path = file.toPath();
+			return new Attributes(lastModified, size, owner,
+					Files.isReadable(path), Files.isWritable(path), Files.isExecutable(path));
+		} catch (UnsupportedOperationException | IOException e) {
+			// not a POSIX file system, owner is not shown
+			return new Attributes(lastModified, size, "", file.canRead(), file.canWrite(), file.canExecute());
+		}
+	}
+}
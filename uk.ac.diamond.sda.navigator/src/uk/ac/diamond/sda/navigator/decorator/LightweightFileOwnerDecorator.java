@@ -10,8 +10,6 @@
 package uk.ac.diamond.sda.navigator.decorator;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.Scanner;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
@@ -19,15 +17,11 @@ import org.eclipse.jface.viewers.IDecoration;
 import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProvider;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class LightweightFileOwnerDecorator extends LabelProvider implements ILightweightLabelDecorator {
 
 	public static final String ID = "uk.ac.diamond.sda.navigator.fileOwnerDecorator";
 	
-	private static final Logger logger = LoggerFactory.getLogger(LightweightFileOwnerDecorator.class);
-	
 	public LightweightFileOwnerDecorator() {
 		super();
 	}
@@ -66,28 +60,12 @@ public class LightweightFileOwnerDecorator extends LabelProvider implements ILig
 		}
 	}
 
+	/**
+	 * @param file
+	 * @return owner of file, empty if not known
+	 */
 	public static String getFileOwner(File file){
-		String owner="";
-		// File owner only for Unix OS
-		String os = System.getProperty("os.name").toLowerCase();
-		String command = "";
-		if((os.indexOf("nix") >= 0) || (os.indexOf("nux") >= 0) || (os.indexOf("mac") >= 0)){
-			//command = "stat -c%U "+file.getAbsolutePath();
-			command = "ls -l "+file.getAbsolutePath();
-			
-			
-			try {
-				Process p = Runtime.getRuntime().exec(command);
-				Scanner sc = new Scanner(p.getInputStream());
-				if(sc.hasNext()){
-					String[] tmp = sc.nextLine().split(" ");
-					owner = tmp[2]; //-rw-rw---- 1 wqk87977 wqk87977 16224 Nov 15 11:21 226942.dat
-				}
-				
-			} catch (IOException e) {
-				logger.warn("WARNING: could not get file owner:",e.getMessage());
-			}
-		}
-		return owner;
+		final FileAttributesCache.Attributes attrs = FileAttributesCache.get(file);
+		return attrs == null ? "" : attrs.owner;
 	}
 }
@@ -29,6 +29,20 @@ public class LightweightMetadataDecorator extends LabelProvider implements ILigh
 	public static final String ID = "uk.ac.diamond.sda.navigator.metadataDecorator";
 	
 	//private static final Logger logger = LoggerFactory.getLogger(LightweightMetadataDecorator.class);
+
+	private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("dd/MM/yy hh:mm aaa");
+		}
+	};
+
+	private static final ThreadLocal<DecimalFormat> SIZE_FORMAT = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("#,##0.#");
+		}
+	};
 	
 	public LightweightMetadataDecorator() {
 		super();
@@ -64,10 +78,12 @@ public class LightweightMetadataDecorator extends LabelProvider implements ILigh
 			IPath path = ifile.getLocation();
 			if (path != null) {
 				File file = path.toFile();
-				String lastModified = new SimpleDateFormat("dd/MM/yy hh:mm aaa").format(new Date(file.lastModified()));
-				String filePermission = getFilePermission(file);
+				FileAttributesCache.Attributes attrs = FileAttributesCache.get(file);
+				if (attrs == null) return;
+				String lastModified = DATE_FORMAT.get().format(new Date(attrs.lastModified));
+				String filePermission = getFilePermission(attrs);
 				// file size - date of last modification - file permissions
-				decoration.addSuffix("  " + readableFileSize(file.length()) + "  " + lastModified);// +"  "+filePermission);
+				decoration.addSuffix("  " + readableFileSize(attrs.size) + "  " + lastModified);// +"  "+filePermission);
 				// Image overlay decoration according to file permission:
 				if (filePermission.equals("- - -")) {
 					ImageDescriptor lockOverlay = ImageDescriptor.createFromFile(this.getClass(),
@@ -83,21 +99,26 @@ public class LightweightMetadataDecorator extends LabelProvider implements ILigh
 			return "0";
 		final String[] units = new String[] { "B", "KB", "MB", "GB", "TB" };
 		int digitGroups = (int) (Math.log10(size) / Math.log10(1024));
-		return new DecimalFormat("#,##0.#").format(size / Math.pow(1024, digitGroups)) + " " + units[digitGroups];
+		return SIZE_FORMAT.get().format(size / Math.pow(1024, digitGroups)) + " " + units[digitGroups];
 	}
 
 	public static String getFilePermission(File file) { 
+		FileAttributesCache.Attributes attrs = FileAttributesCache.get(file);
+		return attrs == null ? "- - -" : getFilePermission(attrs);
+	}
+
+	private static String getFilePermission(FileAttributesCache.Attributes attrs) { 
 		// File Permissions:
 		// r = read permission
 		// w = write permission
 		// x = execute permission
 		// - = no permission
 		String read = "-", write = "-", execute = "-";
-		if (file.canRead())
+		if (attrs.readable)
 			read = "r";
-		if (file.canWrite())
+		if (attrs.writable)
 			write = "w";
-		if (file.canExecute())
+		if (attrs.executable)
 			execute = "x";
 
 		return read + " " + write + " " + execute;
@@ -12,9 +12,10 @@ package uk.ac.diamond.sda.navigator.decorator;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jface.viewers.IDecoration;
-import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+import org.eclipse.swt.widgets.Display;
 
 import uk.ac.diamond.sda.navigator.util.NavigatorUtils;
 
@@ -23,20 +24,16 @@ public class LightweightNXSScanCmdDecorator extends LabelProvider implements ILi
 	public static final String ID = "uk.ac.diamond.sda.navigator.nxsScancmdDecorator";
 
 	private static final String NXS_EXT = "nxs"; //$NON-NLS-1$
-	private String decorator = "";
+	private static final String PENDING = " * ..."; //$NON-NLS-1$
 
 	public LightweightNXSScanCmdDecorator() {
 		super();
 	}
 	
-	@Override
-	public void addListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
-	}
-
 	@Override
 	public void dispose() {
-		// TODO Auto-generated method stub
+		ScanCommandIndex.getInstance().save();
+		super.dispose();
 	}
 
 	@Override
@@ -45,27 +42,47 @@ public class LightweightNXSScanCmdDecorator extends LabelProvider implements ILi
 		return true;
 	}
 
-	@Override
-	public void removeListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
+	/**
+	 * Label of element is decorated again once its scan command has been read
+	 */
+	private void labelChanged(final Object element) {
+		Display.getDefault().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				fireLabelProviderChanged(new LabelProviderChangedEvent(LightweightNXSScanCmdDecorator.this, element));
+			}
+		});
 	}
 
 	@Override
-	public void decorate(Object element, IDecoration decoration) {
-		decorator = "";
+	public void decorate(final Object element, IDecoration decoration) {
 		if (element instanceof IFile) {
 			IFile modelFile = (IFile) element;
 			IPath modelFilePath = modelFile.getLocation();
 			if (modelFilePath != null && modelFilePath.toFile().canRead() && NXS_EXT.equals(modelFile.getFileExtension())) {
-				IFile ifile = (IFile) element;
 
-				String[][] listTitlesAndScanCmd = NavigatorUtils.getHDF5TitlesAndScanCmds(ifile.getLocation().toString());
-				for (int i = 0; i < listTitlesAndScanCmd[0].length; i++) {
-					decorator = listTitlesAndScanCmd[0][i] + listTitlesAndScanCmd[1][i];
-					decoration.addSuffix(decorator);
-				}
+				String decorator = ScanCommandIndex.getInstance().get(modelFilePath.toFile(), READER, new Runnable() {
+					@Override
+					public void run() {
+						labelChanged(element);
+					}
+				});
+				decoration.addSuffix(decorator == null ? PENDING : decorator);
 			}
 		}		
 	}
 
+	private static final ScanCommandIndex.Reader READER = new ScanCommandIndex.Reader() {
+		@Override
+		public String read(String path) throws Exception {
+			String[][] listTitlesAndScanCmd = NavigatorUtils.getHDF5TitlesAndScanCmds(path);
+			if (listTitlesAndScanCmd == null) return "";
+			StringBuilder decorator = new StringBuilder();
+			for (int i = 0; i < listTitlesAndScanCmd[0].length; i++) {
+				decorator.append(listTitlesAndScanCmd[0][i]).append(listTitlesAndScanCmd[1][i]);
+			}
+			return decorator.toString();
+		}
+	};
+
 }
@@ -13,9 +13,10 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.dawnsci.analysis.api.metadata.IExtendedMetadata;
 import org.eclipse.dawnsci.analysis.api.metadata.IMetadata;
 import org.eclipse.jface.viewers.IDecoration;
-import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+import org.eclipse.swt.widgets.Display;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,22 +27,18 @@ public class LightweightSRSScanCmdDecorator extends LabelProvider implements ILi
 	public static final String ID = "uk.ac.diamond.sda.navigator.srsScancmdDecorator";
 
 	private static final String SRS_EXT = "dat"; //$NON-NLS-1$
-	private IExtendedMetadata metaData;
-	private String decorator = "";
+	private static final String PENDING = " * ..."; //$NON-NLS-1$
+	private static final String NOT_AVAILABLE = " * Scan Command: N/A"; //$NON-NLS-1$
 	private static final Logger logger = LoggerFactory.getLogger(LightweightSRSScanCmdDecorator.class);
 
 	public LightweightSRSScanCmdDecorator() {
 		super();
 	}
 	
-	@Override
-	public void addListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
-	}
-
 	@Override
 	public void dispose() {
-		// TODO Auto-generated method stub
+		ScanCommandIndex.getInstance().save();
+		super.dispose();
 	}
 
 	@Override
@@ -50,14 +47,20 @@ public class LightweightSRSScanCmdDecorator extends LabelProvider implements ILi
 		return true;
 	}
 
-	@Override
-	public void removeListener(ILabelProviderListener listener) {
-		// TODO Auto-generated method stub
+	/**
+	 * Label of element is decorated again once its scan command has been read
+	 */
+	private void labelChanged(final Object element) {
+		Display.getDefault().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				fireLabelProviderChanged(new LabelProviderChangedEvent(LightweightSRSScanCmdDecorator.this, element));
+			}
+		});
 	}
 
 	@Override
-	public void decorate(Object element, IDecoration decoration) {
-		decorator = "";
+	public void decorate(final Object element, IDecoration decoration) {
 		if (element instanceof IFile) {
 			IFile modelFile = (IFile) element;
 			if (SRS_EXT.equals(modelFile.getFileExtension())) {
@@ -65,49 +68,48 @@ public class LightweightSRSScanCmdDecorator extends LabelProvider implements ILi
 				
 				if (!ifile.exists())           return;
 				if (ifile.getLocation()==null) return;
-				srsMetaDataLoader(ifile.getLocation().toString());
 
-				try {
-					if(metaData!=null){
-						decorator = metaData.getScanCommand();
-						if(decorator==null){
-							decorator=" * Scan Command: N/A";
-							decoration.addSuffix(decorator);
-						}else{
-							if (decorator.length() > 100) // restrict to 100 characters
-								decorator = decorator.substring(0, 100) + "...";
-							decorator = " * " + decorator;
-							decoration.addSuffix(decorator);
-						}
-					} else {
-						decorator=" * Scan Command: N/A";
-						decoration.addSuffix(decorator);
-						logger.warn("Could not read metadata from file {}",ifile.getFullPath());
+				String decorator = ScanCommandIndex.getInstance().get(ifile.getLocation().toFile(), READER, new Runnable() {
+					@Override
+					public void run() {
+						labelChanged(element);
 					}
-				}catch (Exception e) {
-					logger.error("Could not read metadata from {}: ", e);
-				}
+				});
+				decoration.addSuffix(decorator == null ? PENDING : decorator);
 			}
 		}
 	}
+
+	private static final ScanCommandIndex.Reader READER = new ScanCommandIndex.Reader() {
+		@Override
+		public String read(String path) throws Exception {
+			IExtendedMetadata metaData = srsMetaDataLoader(path);
+			if (metaData == null) {
+				logger.warn("Could not read metadata from file {}", path);
+				return NOT_AVAILABLE;
+			}
+			String decorator = metaData.getScanCommand();
+			if (decorator == null) return NOT_AVAILABLE;
+			if (decorator.length() > 100) // restrict to 100 characters
+				decorator = decorator.substring(0, 100) + "...";
+			return " * " + decorator;
+		}
+	};
 	
 	public IExtendedMetadata srsMyMetaDataLoader(String fullpath){
-		srsMetaDataLoader(fullpath);
-		return metaData;
+		return srsMetaDataLoader(fullpath);
 	}
 	
-	private void srsMetaDataLoader(String fullpath) {
+	private static IExtendedMetadata srsMetaDataLoader(String fullpath) {
 		
 		try {
-			IMetadata metaDataTest=LoaderFactory.getMetadata(fullpath, null);
-			if(metaDataTest instanceof IExtendedMetadata)
-				metaData = (IExtendedMetadata)LoaderFactory.getMetadata(fullpath, null);
-			else{
-				decorator=" * Scan Command: N/A";
-				logger.warn("Cannot decorate SRS decorator");
-			}
+			IMetadata metaData = LoaderFactory.getMetadata(fullpath, null);
+			if (metaData instanceof IExtendedMetadata)
+				return (IExtendedMetadata) metaData;
+			logger.warn("Cannot decorate SRS decorator");
 		} catch (Exception ne) {
 			logger.error("Cannot open dat file", ne);
 		}
+		return null;
 	}
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.decorator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.sda.intro.navigator.NavigatorRCPActivator;
+
+/**
+ * Index of decoration suffixes (scan commands and titles) by file path and modification
+ * time, shared by the scan command decorators.
+ * <p>
+ * Files not in the index are read by a small pool of background threads, which also caps
+ * the number of data files open at once. The decorator is told when a suffix is ready so it
+ * can show a placeholder until then. The index is saved in the plug-in state location so
+ * files already seen are not opened again in the next session.
+ */
+class ScanCommandIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ScanCommandIndex.class);
+
+	private static final int    MAXIMUM_SIZE = 10000;
+	private static final int    READERS      = 2;
+	private static final String INDEX_FILE   = "scancommands.properties";
+
+	/**
+	 * Makes suffix for a file
+	 */
+	interface Reader {
+		String read(String path) throws Exception;
+	}
+
+	private static class Entry {
+		final long   lastModified;
+		final String suffix;
+
+		Entry(long lastModified, String suffix) {
+			this.lastModified = lastModified;
+			this.suffix       = suffix;
+		}
+	}
+
+	private static ScanCommandIndex instance;
+
+	private final Map<String, Entry> index = new LinkedHashMap<String, Entry>(1024, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAXIMUM_SIZE;
+		}
+	};
+	private final Set<String> pending = new HashSet<String>();
+	private final ExecutorService readers;
+	private boolean loaded = false;
+	private boolean dirty  = false;
+
+	static synchronized ScanCommandIndex getInstance() {
+		if (instance == null) instance = new ScanCommandIndex();
+		return instance;
+	}
+
+	private ScanCommandIndex() {
+		readers = Executors.newFixedThreadPool(READERS, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "Scan command reader");
+				thread.setPriority(Thread.MIN_PRIORITY);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Get suffix of file, or start reading it in the background if it is not known
+	 * for the file's current modification time
+	 * @param file
+	 * @param reader used to make suffix
+	 * @param done run when the suffix has been read
+	 * @return suffix or null if it is being read
+	 */
+	synchronized String get(final File file, final Reader reader, final Runnable done) {
+		if (!loaded) load();
+
+		final String path = file.getAbsolutePath();
+		final long lastModified = file.lastModified();
+		final Entry entry = index.get(path);
+		if (entry != null && entry.lastModified == lastModified) return entry.suffix;
+
+		if (pending.add(path)) {
+			readers.execute(new Runnable() {
+				@Override
+				public void run() {
+					String suffix;
+					try {
+						suffix = reader.read(path);
+					} catch (Exception e) {
+						logger.debug("Cannot read {}", path, e);
+						suffix = "";
+					}
+					synchronized (ScanCommandIndex.this) {
+						pending.remove(path);
+						index.put(path, new Entry(lastModified, suffix == null ? "" : suffix));
+						dirty = true;
+					}
+					done.run();
+				}
+			});
+		}
+		return null;
+	}
+
+	private File getIndexFile() {
+		final NavigatorRCPActivator activator = NavigatorRCPActivator.getDefault();
+		if (activator == null) return null; // not running in workbench
+		return activator.getStateLocation().append(INDEX_FILE).toFile();
+	}
+
+	private void load() {
+		loaded = true;
+		final File file = getIndexFile();
+		if (file == null || !file.exists()) return;
+
+		final Properties props = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			props.load(in);
+		} catch (IOException e) {
+			logger.debug("Cannot load scan command index", e);
+			return;
+		}
+		for (String path : props.stringPropertyNames()) {
+			final String value = props.getProperty(path);
+			final int sep = value.indexOf(':');
+			if (sep < 0) continue;
+			try {
+				index.put(path, new Entry(Long.parseLong(value.substring(0, sep)), value.substring(sep + 1)));
+			} catch (NumberFormatException e) {
+				// ignore entry
+			}
+		}
+	}
+
+	/**
+	 * Write index to plug-in state location if it has changed
+	 */
+	synchronized void save() {
+		if (!dirty) return;
+		final File file = getIndexFile();
+		if (file == null) return;
+
+		final Properties props = new Properties();
+		for (Map.Entry<String, Entry> e : index.entrySet()) {
+			props.setProperty(e.getKey(), e.getValue().lastModified + ":" + e.getValue().suffix);
+		}
+		try (OutputStream out = new FileOutputStream(file)) {
+			props.store(out, "Scan commands and titles of data files");
+			dirty = false;
+		} catch (IOException e) {
+			logger.debug("Cannot save scan command index", e);
+		}
+	}
+}
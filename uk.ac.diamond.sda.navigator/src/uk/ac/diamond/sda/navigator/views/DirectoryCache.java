@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorted directory listings for the file navigator.
+ * <p>
+ * Listings are kept for a bounded number of directories and entries, evicting the least
+ * recently used first. Each cached directory is watched and files created or deleted in it
+ * are inserted into or removed from its sorted listing, so a listing never has to be read
+ * again while it is cached. Listings and sets of collapsed data collections are replaced
+ * rather than changed so one handed out stays consistent while it is being used.
+ */
+class DirectoryCache implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryCache.class);
+
+	private static final int MAXIMUM_DIRECTORIES = 512;
+	private static final int MAXIMUM_ENTRIES     = 2000000;
+
+	/**
+	 * Told when a cached listing changes
+	 */
+	interface Listener {
+		/**
+		 * @param dir
+		 * @param size new number of entries or -1 if the listing was dropped and needs reading again
+		 */
+		void directoryChanged(Path dir, int size);
+	}
+
+	private static class Listing {
+		final Path dir;
+		final boolean dirsFirst;
+		final ILoaderService lservice; // set when data collections are collapsed
+		final Set<String> ids; // only used with directory's lock held
+		volatile Set<String> stubs;
+		volatile List<Path> paths;
+		int dirCount; // directories at start of list when sorted first
+		WatchKey key;
+
+		Listing(Path dir, List<Path> paths, int dirCount, boolean dirsFirst, ILoaderService lservice, Set<String> stubs, Set<String> ids) {
+			this.dir       = dir;
+			this.paths     = paths;
+			this.dirCount  = dirCount;
+			this.dirsFirst = dirsFirst;
+			this.lservice  = lservice;
+			this.stubs     = stubs == null ? null : Collections.unmodifiableSet(stubs);
+			this.ids       = ids;
+		}
+	}
+
+	private final LinkedHashMap<String, Listing> listings = new LinkedHashMap<String, Listing>(89, 0.75f, true);
+	private final Map<WatchKey, Listing>        watched  = new HashMap<WatchKey, Listing>(89);
+	private final ConcurrentHashMap<String, ReentrantLock> locks = new ConcurrentHashMap<String, ReentrantLock>(89);
+	private final Listener listener;
+	private long entries = 0;
+	private WatchService watchService;
+	private volatile boolean disposed = false;
+
+	DirectoryCache(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param dir
+	 * @return sorted listing or null if not cached
+	 */
+	public synchronized List<Path> get(Path dir) {
+		Listing l = listings.get(dir.toString());
+		return l == null ? null : l.paths;
+	}
+
+	public synchronized boolean contains(Path dir) {
+		return listings.containsKey(dir.toString());
+	}
+
+	/**
+	 * @param dir
+	 * @return identifiers of data collections with more than one file or null. The set does
+	 * not change once returned
+	 */
+	public synchronized Set<String> getStubs(Path dir) {
+		Listing l = listings.get(dir.toString());
+		return l == null ? null : l.stubs;
+	}
+
+	public ReentrantLock getLock(Path dir) {
+		ReentrantLock lock = locks.get(dir.toString());
+		if (lock == null) {
+			lock = new ReentrantLock();
+			ReentrantLock old = locks.putIfAbsent(dir.toString(), lock);
+			if (old != null) lock = old;
+		}
+		return lock;
+	}
+
+	/**
+	 * Cache listing and start watching its directory
+	 * @param dir
+	 * @param paths sorted by name, with directories first if dirsFirst is set
+	 * @param dirCount number of directories at start of list if dirsFirst is set
+	 * @param dirsFirst
+	 * @param lservice used to collapse data collections, may be null
+	 * @param stubs identifiers of collapsed data collections, null if not collapsing
+	 * @param ids identifiers of all data collections, null if not collapsing
+	 */
+	public synchronized void put(Path dir, List<Path> paths, int dirCount, boolean dirsFirst, ILoaderService lservice, Set<String> stubs, Set<String> ids) {
+		if (disposed) return;
+
+		remove(dir);
+
+		final Listing listing = new Listing(dir, paths, dirsFirst ? dirCount : 0, dirsFirst, lservice, stubs, ids);
+		try {
+			if (watchService == null) {
+				watchService = FileSystems.getDefault().newWatchService();
+				final Thread thread = new Thread(this, "Directory watcher");
+				thread.setPriority(Thread.MIN_PRIORITY);
+				thread.setDaemon(true);
+				thread.start();
+			}
+			listing.key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+			watched.put(listing.key, listing);
+		} catch (IOException | UnsupportedOperationException e) {
+			// listing will not update until it is refreshed
+			logger.debug("Cannot watch {}", dir, e);
+		}
+		listings.put(dir.toString(), listing);
+		entries += paths.size();
+		trim();
+	}
+
+	private void trim() {
+		final Iterator<Listing> it = listings.values().iterator();
+		while (listings.size() > 1 && (listings.size() > MAXIMUM_DIRECTORIES || entries > MAXIMUM_ENTRIES)) {
+			final Listing l = it.next();
+			it.remove();
+			release(l);
+		}
+	}
+
+	private void release(Listing l) {
+		entries -= l.paths.size();
+		locks.remove(l.dir.toString());
+		if (l.key != null) {
+			watched.remove(l.key);
+			l.key.cancel();
+		}
+	}
+
+	/**
+	 * Drop listing
+	 * @param dir
+	 * @return true if listing was cached
+	 */
+	public synchronized boolean remove(Path dir) {
+		final Listing l = listings.remove(dir.toString());
+		if (l == null) return false;
+		release(l);
+		return true;
+	}
+
+	public synchronized void clear() {
+		for (Listing l : listings.values()) {
+			release(l);
+		}
+		listings.clear();
+		locks.clear();
+		entries = 0;
+	}
+
+	public void dispose() {
+		disposed = true;
+		synchronized (this) {
+			clear();
+			if (watchService != null) {
+				try {
+					watchService.close();
+				} catch (IOException e) {
+					logger.debug("Cannot close watch service", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (!disposed) {
+			final WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (Exception e) { // interrupted or closed
+				return;
+			}
+
+			final Listing listing;
+			synchronized (this) {
+				listing = watched.get(key);
+			}
+			final List<WatchEvent<?>> events = key.pollEvents();
+			key.reset();
+			if (listing == null) continue;
+
+			if (events.isEmpty()) continue;
+			update(listing, events);
+		}
+	}
+
+	/**
+	 * Apply events to cached listing of directory as the watcher does
+	 * @param dir
+	 * @param events
+	 * @return false if directory is not cached
+	 */
+	boolean update(Path dir, List<WatchEvent<?>> events) {
+		final Listing listing;
+		synchronized (this) {
+			listing = listings.get(dir.toString());
+		}
+		if (listing == null) return false;
+		update(listing, events);
+		return true;
+	}
+
+	private void update(Listing listing, List<WatchEvent<?>> events) {
+		final int size = applyChanges(listing, events);
+		if (size < 0) remove(listing.dir);
+		listener.directoryChanged(listing.dir, size);
+	}
+
+	/**
+	 * @return new size or -1 if listing must be read again
+	 */
+	private int applyChanges(Listing listing, List<WatchEvent<?>> events) {
+		final ReentrantLock lock = getLock(listing.dir);
+		lock.lock();
+		try {
+			final List<Path> paths = listing.paths instanceof PathList ? new PathList((PathList) listing.paths)
+					                                                   : new ArrayList<Path>(listing.paths);
+			final Set<String> stubs = listing.stubs == null ? null : new HashSet<String>(listing.stubs);
+			for (WatchEvent<?> event : events) {
+				if (event.kind() == OVERFLOW) return -1;
+
+				final Path   path = listing.dir.resolve((Path) event.context());
+				final String name = path.getFileName().toString();
+				if (event.kind() == ENTRY_CREATE) {
+					add(listing, paths, stubs, path, name);
+				} else if (event.kind() == ENTRY_DELETE) {
+					// a deleted file may have been standing for a collapsed data collection
+					if (stubs != null) return -1;
+					remove(listing, paths, name);
+				}
+			}
+			synchronized (this) {
+				if (listings.get(listing.dir.toString()) == listing) { // not dropped meanwhile
+					entries += paths.size() - listing.paths.size();
+				}
+				listing.paths = paths;
+				if (stubs != null && stubs.size() != listing.stubs.size()) {
+					listing.stubs = Collections.unmodifiableSet(stubs);
+				}
+			}
+			return paths.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void add(Listing listing, List<Path> paths, Set<String> stubs, Path path, String name) {
+		final boolean isDir = Files.isDirectory(path);
+		if (!isDir && listing.lservice != null) {
+			final Matcher matcher = listing.lservice.getStackMatcher(name);
+			if (matcher != null && matcher.matches()) {
+				final String id = matcher.group(1);
+				if (listing.ids.contains(id)) {
+					stubs.add(id);
+					return;
+				}
+				listing.ids.add(id);
+			}
+		}
+
+		final boolean inDirs = isDir && listing.dirsFirst;
+		final int pos = inDirs ? search(paths, 0, listing.dirCount, name)
+				               : search(paths, listing.dirCount, paths.size(), name);
+		if (pos >= 0) return; // already listed
+
+		paths.add(-pos - 1, path);
+		if (inDirs) listing.dirCount++;
+	}
+
+	private static void remove(Listing listing, List<Path> paths, String name) {
+		int pos = search(paths, listing.dirCount, paths.size(), name);
+		if (pos >= 0) {
+			paths.remove(pos);
+			return;
+		}
+		pos = search(paths, 0, listing.dirCount, name);
+		if (pos >= 0) {
+			paths.remove(pos);
+			listing.dirCount--;
+		}
+	}
+
+	/**
+	 * Binary search by file name in part of a sorted list
+	 * @return index of name or (-(insertion point) - 1)
+	 */
+	static int search(List<Path> paths, int from, int to, String name) {
+		int lo = from;
+		int hi = to - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final String n = paths instanceof PathList ? ((PathList) paths).getName(mid)
+					                                   : paths.get(mid).getFileName().toString();
+			final int c   = n.compareTo(name);
+			if (c < 0) {
+				lo = mid + 1;
+			} else if (c > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(lo + 1);
+	}
+}
@@ -14,12 +14,11 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -30,6 +29,8 @@ import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
 import org.eclipse.jface.action.IStatusLineManager;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.viewers.ILazyTreeContentProvider;
+import org.eclipse.jface.viewers.ITreeViewerListener;
+import org.eclipse.jface.viewers.TreeExpansionEvent;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
@@ -59,28 +60,62 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 	private Thread updateElementThread;
 
 	/**
-	 * Two threads with different priorities used.
+	 * Child sizes are found by several threads so that expanding a folder
+	 * with many sub-folders does not scan them one after another.
+	 */
+	private Thread[] updateChildThreads;
+	private static final int CHILD_THREADS = 4;
+
+	/**
+	 * Child requests queued or running, one per element. Requests
+	 * for a folder already being scanned are dropped.
+	 */
+	private final Map<Object, ChildUpdateRequest> pendingChildren = new ConcurrentHashMap<Object, ChildUpdateRequest>(89);
+
+	/**
+	 * Child sizes waiting to be given to the viewer in one go.
 	 */
-	private Thread updateChildThread;
+	private final Map<Object, Integer> childCounts = new LinkedHashMap<Object, Integer>(89);
+	private final Set<Object>          childRefreshes = new HashSet<Object>(89);
+
+	/**
+	 * Large directories are shown while they are read. A sorted snapshot is made
+	 * when this many names have been read and again each time the number doubles.
+	 */
+	private static final int PAGE_SIZE = 2000;
+	private final Map<Path, List<Path>> partialListings = new ConcurrentHashMap<Path, List<Path>>(7);
+
+	private final ITreeViewerListener collapseListener = new ITreeViewerListener() {
+		@Override
+		public void treeExpanded(TreeExpansionEvent event) {
+		}
+
+		@Override
+		public void treeCollapsed(TreeExpansionEvent event) {
+			if (event.getElement() instanceof Path) cancelChildren((Path)event.getElement());
+		}
+	};
 
 	/**
 	 * Caching seems to be needed to keep the path sorting
 	 * fast. This used to be a soft reference cache but the 
 	 * file browsing does not really work if you start making the
-	 * cached
+	 * cached. The cache is bounded and watches its directories
+	 * so new or deleted files show up without listing again.
 	 */  
-	private Map<String, List<Path>>    cachedSorting;
-	private Map<String, Set<String>>   cachedStubs;
-	private Map<String, ReentrantLock> cachedLocks;
+	private DirectoryCache cache;
 	
 	@SuppressWarnings("unused")
 	private IStatusLineManager statusManager;
 
 	public FileContentProvider(final IStatusLineManager statusManager) {
 		this.statusManager = statusManager;
-		this.cachedSorting = new ConcurrentHashMap<String, List<Path>>(89);
-		this.cachedStubs   = new ConcurrentHashMap<String, Set<String>>(89);
-		this.cachedLocks   = new ConcurrentHashMap<String, ReentrantLock>(89);
+		this.cache         = new DirectoryCache(new DirectoryCache.Listener() {
+			@Override
+			public void directoryChanged(Path dir, int size) {
+				updateDirectory(dir, size);
+			}
+		});
 		
 		this.elementQueue  = new LinkedBlockingDeque<UpdateRequest>(Integer.MAX_VALUE);
 		this.childQueue    = new LinkedBlockingDeque<UpdateRequest>(Integer.MAX_VALUE);
@@ -93,6 +128,7 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 	@Override
 	public void dispose() {
 		clearAndStop(null, true);
+		cache.dispose();
 		elementQueue = null;
 		childQueue = null;
 	}
@@ -100,9 +136,8 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 	private void clear() {
 		if (elementQueue!=null)  elementQueue.clear();
 		if (childQueue!=null)    childQueue.clear();
-		if (cachedSorting!=null) cachedSorting.clear();
-		if (cachedStubs!=null)   cachedStubs.clear();
-		if (cachedLocks!=null)   cachedLocks.clear();
+		cancelChildren(null);
+		if (cache!=null)         cache.clear();
 	}
 	
 	public void clearAndStop() {
@@ -114,17 +149,19 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 			elementQueue.offerFirst(new BlankUpdateRequest()); // break the queue
 			updateElementThread = null;
 			
-			childQueue.offerFirst(new BlankUpdateRequest()); // break the queue
-			updateChildThread = null;
+			if (updateChildThreads!=null) {
+				for (int i = 0; i < updateChildThreads.length; i++) {
+					childQueue.offerFirst(new BlankUpdateRequest()); // break the queue
+				}
+			}
+			updateChildThreads = null;
 		}
 
 		if (path!=null) {
 			if (elementQueue!=null)  elementQueue.clear();
 			if (childQueue!=null)    childQueue.clear();
-			cachedStubs.remove(path.toString());
-			cachedLocks.remove(path.toString());
-			Object old = cachedSorting.remove(path.toString());
-			if (old==null) {
+			cancelChildren(null);
+			if (!cache.remove(path)) {
 				System.err.println("Unexpected clear in "+getClass().getSimpleName());
 				clear();
 			}
@@ -137,11 +174,26 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 		if (paths==null) return;
 		for (int i = 0; i < paths.length; i++) {
 			if (paths[i]==null) continue;
-			cachedStubs.remove(paths[i].toString());
-			cachedLocks.remove(paths[i].toString());
-			cachedSorting.remove(paths[i].toString());
+			cache.remove(paths[i]);
 		}
 	}
+
+	/**
+	 * Show files created or deleted in a cached directory
+	 * @param dir
+	 * @param size number of children or -1 to list directory again
+	 */
+	private void updateDirectory(final Path dir, final int size) {
+		if (treeViewer==null || treeViewer.getControl().isDisposed()) return;
+		treeViewer.getControl().getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (treeViewer.getControl().isDisposed()) return;
+				if (size>=0) treeViewer.setChildCount(dir, size);
+				treeViewer.refresh(dir);
+			}
+		});
+	}
 	
 	private static final int ELEMENT_PRIORITY = Thread.MIN_PRIORITY;
 	private static final int CHILD_PRIORITY   = Thread.MAX_PRIORITY;
@@ -150,10 +202,85 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 
 	@Override
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		if (treeViewer!=viewer) {
+			if (treeViewer!=null) treeViewer.removeTreeListener(collapseListener);
+			((TreeViewer) viewer).addTreeListener(collapseListener);
+		}
 		treeViewer = (TreeViewer) viewer;
 		treeViewer.refresh();
 	}
 
+	/**
+	 * Queue scan of element for its child size, unless one is already queued or running.
+	 * Called in display thread.
+	 */
+	private void requestChildCount(Object element, boolean updateBusyRequired) {
+		
+		ChildUpdateRequest old = pendingChildren.get(element);
+		if (old!=null && old.isRunning()) return; // size is on its way
+		
+		if (updateChildThreads==null) {
+			updateChildThreads = new Thread[CHILD_THREADS];
+			for (int i = 0; i < CHILD_THREADS; i++) {
+				updateChildThreads[i] = createUpdateThread(childQueue, CHILD_PRIORITY, "Update child size "+i);
+			}
+		}
+		final ChildUpdateRequest req = new ChildUpdateRequest(element, updateBusyRequired);
+		old = pendingChildren.put(element, req);
+		if (old!=null) old.cancel(); // newer request is processed first
+		childQueue.offerFirst(req);
+	}
+
+	/**
+	 * Stop looking for child sizes of folders below given one
+	 * @param folder or null for all
+	 */
+	private void cancelChildren(Path folder) {
+		for (ChildUpdateRequest req : pendingChildren.values()) {
+			final Object element = req.getElement();
+			if (folder==null || (element instanceof Path && !folder.equals(element) && ((Path)element).startsWith(folder))) {
+				req.cancel();
+				pendingChildren.remove(element, req);
+			}
+		}
+	}
+
+	/**
+	 * Child sizes found by the scanning threads are collected and set in
+	 * the viewer together, rather than waiting on the display for each folder.
+	 * @param refresh if children shown so far may have moved
+	 */
+	private void postChildCount(final Object element, final int size, boolean refresh) {
+		
+		synchronized (childCounts) {
+			final boolean posted = !childCounts.isEmpty();
+			childCounts.put(element, size);
+			if (refresh) childRefreshes.add(element);
+			if (posted) return;
+		}
+		if (treeViewer.getControl().isDisposed()) return;
+		treeViewer.getControl().getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				final Map<Object, Integer> counts;
+				final Set<Object>          refreshes;
+				synchronized (childCounts) {
+					counts    = new LinkedHashMap<Object, Integer>(childCounts);
+					refreshes = new HashSet<Object>(childRefreshes);
+					childCounts.clear();
+					childRefreshes.clear();
+				}
+				if (treeViewer.getControl().isDisposed()) return;
+				for (Map.Entry<Object, Integer> entry : counts.entrySet()) {
+					updateChildCountInternal(entry.getKey(), entry.getValue());
+					if (refreshes.contains(entry.getKey()) && treeViewer.getExpandedState(entry.getKey())) {
+						treeViewer.refresh(entry.getKey());
+					}
+				}
+			}
+		});
+	}
+
 	@Override
 	public void updateElement(Object parent, int index) {
 
@@ -178,8 +305,7 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 			// We correct when they expand, listFiles() could be slow.
 			if (Files.isDirectory(element)) {
 				treeViewer.setChildCount(element, 1); // 1 for now
-				if (updateChildThread==null) updateChildThread = createUpdateThread(childQueue, CHILD_PRIORITY, "Update child size");
-				childQueue.offerFirst(new ChildUpdateRequest(element, false)); // process size from queue
+				requestChildCount(element, false); // process size from queue
 			} else {
 				treeViewer.setChildCount(element, 0);
 			}
@@ -197,8 +323,7 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 		}
 		
 		if (PlatformUI.isWorkbenchRunning()) {
-			if (updateChildThread==null) updateChildThread = createUpdateThread(childQueue, CHILD_PRIORITY, "Update child size");
-			childQueue.offerFirst(new ChildUpdateRequest(element, true));
+			requestChildCount(element, true);
 		} else {
 			updateChildCountInternal(element, currentChildCount);
 		}
@@ -222,14 +347,10 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 	private List<Path> getFileList(Path node) {
 		
 		if (!Files.isDirectory(node)) return null;
-		if (cachedSorting==null) return null;
+		if (cache==null) return null;
 				
-		if (cachedSorting.containsKey(node.toString())) {
-			List<Path> sorted = cachedSorting.get(node.toString());
-			if (sorted!=null) return sorted;
-		}
-		
-		return null;
+		final List<Path> fa = cache.get(node);
+		return fa!=null ? fa : partialListings.get(node);
 	}
 
 
@@ -339,12 +460,17 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 					fa = NIOUtils.getRoots();
 				} else {
 					final Path node = (Path) getElement();
-					ReentrantLock lock = getLock(node);
-					try {
-						lock.lock();
-						fa = getFileList(node);
-					} finally {
-						lock.unlock();
+					final List<Path> partial = partialListings.get(node);
+					if (partial!=null) { // still being read
+						fa = partial;
+					} else {
+						ReentrantLock lock = cache.getLock(node);
+						try {
+							lock.lock();
+							fa = getFileList(node);
+						} finally {
+							lock.unlock();
+						}
 					}
 				}
 	
@@ -375,6 +501,8 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 	private class ChildUpdateRequest extends UpdateRequest {
 
 		private boolean updateBusyRequired;
+		private volatile boolean running   = false;
+		private volatile boolean cancelled = false;
 
 
 		public ChildUpdateRequest(Object element, boolean updateBusyRequired) {
@@ -383,16 +511,29 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 			this.updateBusyRequired = updateBusyRequired;
 		}
 
+		public boolean isRunning() {
+			return running;
+		}
+
+		/**
+		 * Drop request or stop its scan, in which case nothing is cached.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
 
 		@Override
 		public boolean process() throws Exception {
 			
+			if (cancelled) return true;
+			running = true;
 			try {
-				if (cachedSorting.containsKey(element.toString())) return true;
+				if (element instanceof Path && cache.contains((Path)element)) return true;
 				
 				if (updateBusyRequired) updateBusy(childQueue, true);
 				
-				int count = 0;
+				int     count   = 0;
+				boolean refresh = false;
 				
 				if (element instanceof Path) {
 					Path path = (Path)element;
@@ -406,25 +547,33 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 						    lservice = (ILoaderService)PlatformUI.getWorkbench().getService(ILoaderService.class);
 						}
 						
-		    		    final Map<String, Path> files = new TreeMap<String, Path>();
-		    		    final Map<String, Path> dirs  = new TreeMap<String, Path>();
+		    		    final boolean dirsFirst = sort==FileSortType.ALPHA_NUMERIC_DIRS_FIRST;
+		    		    final PathList.Builder names = new PathList.Builder(path, dirsFirst);
+		    		    int nextPage = PAGE_SIZE;
 
 			        	// Faster way than File.list() in theory
 			        	// see http://www.rgagnon.com/javadetails/java-get-directory-content-faster-with-many-files.html						
 				        try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
 				        	
-				        	Set<String> tmp = null;
+				        	Set<String> tmp   = null;
+				        	Set<String> stubs = null;
 				        	
 							if (collapseDatacollections) {
-								tmp = new HashSet<String>(31);
-								cachedStubs.put(path.toString(), new HashSet<String>(31));
+								tmp   = new HashSet<String>(31);
+								stubs = new HashSet<String>(31);
 							}
 			        	
-							ReentrantLock lock = getLock(path);
+							ReentrantLock lock = cache.getLock(path);
 							try {
 								lock.lock();
 					        	for (Path p : ds) {
 					        		
+					        		if (cancelled) return true; // folder collapsed
+					        		if (names.size() >= nextPage) { // show what we have so far
+					        			partialListings.put(path, names.sort());
+					        			postChildCount(path, names.size(), true);
+					        			nextPage *= 2;
+					        		}
 					        		final boolean isDir = Files.isDirectory(p);
 					        		final String  name  = p.getFileName().toString();
 					        		
@@ -437,7 +586,7 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 					        					// If we already have an item for this scan:
 					        					if (tmp!=null && tmp.contains(id)) {
 					        						// We have more than one of them, so they get truncated
-					        						cachedStubs.get(path.toString()).add(id);
+					        						stubs.add(id);
 					        						continue;
 					        					}
 
@@ -445,26 +594,19 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 					        					tmp.add(id);
 					        				}
 					        			}
-						        		files.put(name, p);
-						        		
-					        		} else if (isDir && sort==FileSortType.ALPHA_NUMERIC_DIRS_FIRST) { // dirs separate
-					        			dirs.put(name, p);
-					        		} else {
-					        			files.put(name, p);
 					        		}
-					        		count+=1; 
+					        		names.add(name, isDir);
 					        	}
 					        
 				        	
 				        		// We precache the directory contents now because we pared them down with the regexp
-					    	    final List<Path> ret = new ArrayList<Path>(files.size()+dirs.size());
-					    	    ret.addAll(dirs.values());
-					    	    ret.addAll(files.values());
-					    	    dirs.clear();
-					    	    files.clear();
-					    	    cachedSorting.put(path.toString(), ret);
+					    	    final List<Path> ret = names.sort();
+					    	    cache.put(path, ret, names.getDirCount(), dirsFirst, lservice, stubs, tmp);
+					    	    count   = ret.size();
+					    	    refresh = nextPage > PAGE_SIZE;
 					    	    
 							} finally {
+								partialListings.remove(path);
 								lock.unlock();
 							}
 
@@ -476,20 +618,12 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 					for (@SuppressWarnings("unused")Path p : NIOUtils.getRoots()) count+=1;
 				}
 				
-				final int size = count;
-		        
 				if (treeViewer.getControl().isDisposed()) return false;
-				treeViewer.getControl().getDisplay().syncExec(new Runnable() {
-					@Override
-					public void run() {
-						if (treeViewer.getControl().isDisposed()) return;
-						updateChildCountInternal(element, size);
-					}
-				});
-				    
+				postChildCount(element, count, refresh);
 				
 			} finally {
 				
+				pendingChildren.remove(element, this);
 			    if (updateBusyRequired) updateBusy(childQueue, false);
 			}
 			
@@ -543,18 +677,6 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 		return thread;
 	}
 
-	private ReentrantLock getLock(Path path) {
-		ReentrantLock lock;
-		if (cachedLocks.containsKey(path.toString())) {
-			lock = cachedLocks.get(path.toString());
-		} else {
-			lock = new ReentrantLock();
-			cachedLocks.put(path.toString(), lock);
-		}
-		return lock;
-	}
-
-
 	public boolean isCollapseDatacollections() {
 		return collapseDatacollections;
 	}
@@ -566,11 +688,11 @@ public class FileContentProvider implements ILazyTreeContentProvider {
 
 
 	public boolean isCached(Path folder) {
-		return cachedSorting.containsKey(folder.toString());
+		return cache.contains(folder);
 	}
 
 	public Set<String> getStubs(Path folder) {
-		return cachedStubs.get(folder.toString());
+		return cache.getStubs(folder);
 	}
 
 }
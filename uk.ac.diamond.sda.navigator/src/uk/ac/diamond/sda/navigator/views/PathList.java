@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.navigator.views;
+
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Listing of one directory which holds the file names in a shared character arena
+ * rather than as Path objects, so very large directories take little memory. Paths
+ * are made when they are asked for.
+ * <p>
+ * Lists are built with a {@link Builder}, which can hand out sorted snapshots while
+ * a directory is still being read.
+ */
+class PathList extends AbstractList<Path> implements RandomAccess {
+
+	private final Path dir;
+	private char[] chars;
+	private int charCount;
+	private boolean sharedChars;
+	private long[] entries; // name start << 32 | name length, in list order
+	private int size;
+
+	private PathList(Path dir, char[] chars, int charCount, long[] entries, int size) {
+		this.dir         = dir;
+		this.chars       = chars;
+		this.charCount   = charCount;
+		this.sharedChars = true;
+		this.entries     = entries;
+		this.size        = size;
+	}
+
+	/**
+	 * Copy which can be changed without affecting the original
+	 * @param other
+	 */
+	PathList(PathList other) {
+		this(other.dir, other.chars, other.charCount, Arrays.copyOf(other.entries, other.size), other.size);
+	}
+
+	@Override
+	public Path get(int index) {
+		return dir.resolve(getName(index));
+	}
+
+	/**
+	 * @param index
+	 * @return file name at index
+	 */
+	public String getName(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+		final long e = entries[index];
+		return new String(chars, (int) (e >>> 32), (int) e);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void add(int index, Path path) {
+		if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+		final String name = path.getFileName().toString();
+		if (sharedChars || charCount + name.length() > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(charCount + name.length(), charCount + charCount / 8 + 16));
+			sharedChars = false;
+		}
+		name.getChars(0, name.length(), chars, charCount);
+
+		if (size == entries.length) entries = Arrays.copyOf(entries, size + size / 8 + 16);
+		System.arraycopy(entries, index, entries, index + 1, size - index);
+		entries[index] = ((long) charCount << 32) | name.length();
+		charCount += name.length();
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Path remove(int index) {
+		final Path path = get(index);
+		System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+		size--;
+		modCount++;
+		return path; // name stays in arena until list is copied
+	}
+
+	/**
+	 * Collects names of a directory in the order they are read and sorts them by name,
+	 * with directories first if required. Each call to {@link #sort()} only sorts the
+	 * names added since the last call and merges them in, so asking for snapshots at
+	 * growing intervals costs little more than sorting once.
+	 */
+	static class Builder {
+
+		private final Path dir;
+		private final boolean dirsFirst;
+		private char[] chars = new char[4096];
+		private int charCount = 0;
+		private long[] entries = new long[256];
+		private final BitSet dirs = new BitSet();
+		private int size = 0;
+		private int dirCount = 0;
+		private int[] order = new int[0]; // sorted indices of names added before last sort
+		private int[] tmp = new int[0];
+
+		Builder(Path dir, boolean dirsFirst) {
+			this.dir       = dir;
+			this.dirsFirst = dirsFirst;
+		}
+
+		void add(String name, boolean isDir) {
+			if (charCount + name.length() > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(charCount + name.length(), 2 * chars.length));
+			}
+			name.getChars(0, name.length(), chars, charCount);
+			if (size == entries.length) entries = Arrays.copyOf(entries, 2 * size);
+			entries[size] = ((long) charCount << 32) | name.length();
+			charCount += name.length();
+			if (isDir) {
+				dirs.set(size);
+				dirCount++;
+			}
+			size++;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * @return number of directories at start of sorted list, zero if not sorted first
+		 */
+		int getDirCount() {
+			return dirsFirst ? dirCount : 0;
+		}
+
+		/**
+		 * @return sorted snapshot of names added so far
+		 */
+		List<Path> sort() {
+			final int sorted = order.length;
+			if (sorted < size) {
+				final int[] next = Arrays.copyOf(order, size);
+				for (int i = sorted; i < size; i++) next[i] = i;
+				if (tmp.length < size) tmp = new int[Math.max(size, 2 * tmp.length)];
+				mergeSort(next, sorted, size);
+				merge(next, 0, sorted, size);
+				order = next;
+			}
+
+			final long[] list = new long[size];
+			for (int i = 0; i < size; i++) list[i] = entries[order[i]];
+			return new PathList(dir, chars, charCount, list, size);
+		}
+
+		private void mergeSort(int[] a, int from, int to) {
+			if (to - from < 2) return;
+			final int mid = (from + to) >>> 1;
+			mergeSort(a, from, mid);
+			mergeSort(a, mid, to);
+			merge(a, from, mid, to);
+		}
+
+		private void merge(int[] a, int from, int mid, int to) {
+			if (from == mid || mid == to || compare(a[mid - 1], a[mid]) <= 0) return;
+			System.arraycopy(a, from, tmp, from, to - from);
+			int i = from, j = mid, k = from;
+			while (i < mid && j < to) {
+				a[k++] = compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+			}
+			while (i < mid) a[k++] = tmp[i++];
+			while (j < to)  a[k++] = tmp[j++];
+		}
+
+		private int compare(int a, int b) {
+			if (dirsFirst) {
+				final boolean da = dirs.get(a);
+				if (da != dirs.get(b)) return da ? -1 : 1;
+			}
+			final long ea = entries[a], eb = entries[b];
+			final int sa = (int) (ea >>> 32), la = (int) ea;
+			final int sb = (int) (eb >>> 32), lb = (int) eb;
+			final int n  = Math.min(la, lb);
+			for (int i = 0; i < n; i++) {
+				final char ca = chars[sa + i], cb = chars[sb + i];
+				if (ca != cb) return ca - cb;
+			}
+			return la - lb;
+		}
+	}
+}
@@ -18,6 +18,7 @@ public abstract class AbstractPollJob extends Job {
 	private static final String POLL_TIME = "PollTime";
 	private JobParameters jobParameters = null;
 	private long lastRun;
+	private long pollPeriod = -1;
 	private String status = "Starting";
 
 	private void runJob() {
@@ -27,18 +28,35 @@ public abstract class AbstractPollJob extends Job {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		pollPeriod = -1;
 		lastRun = System.currentTimeMillis();
 		this.schedule();
 	}
 
-	public long timeToSchedule() {
-		long pollTime = (long) (Double.parseDouble(jobParameters.get(POLL_TIME)) * 1000.0);
-		long time = (lastRun + pollTime) - System.currentTimeMillis();
-		if (time < 0) {
-			runJob();
-			time = pollTime;
+	/**
+	 * Run job now, picking up any changes to its parameter file
+	 * @return time of next poll in ms since the epoch
+	 */
+	public long poll() {
+		runJob();
+		return getNextPollTime();
+	}
+
+	/**
+	 * @return time of next poll in ms since the epoch
+	 */
+	public long getNextPollTime() {
+		return lastRun + getPollPeriod();
+	}
+
+	/**
+	 * @return poll time in ms, as last read from the parameter file
+	 */
+	public long getPollPeriod() {
+		if (pollPeriod < 0) {
+			pollPeriod = (long) (Double.parseDouble(jobParameters.get(POLL_TIME)) * 1000.0);
 		}
-		return time;
+		return pollPeriod;
 	}
 
 	public AbstractPollJob(String name) {
@@ -52,6 +70,7 @@ public abstract class AbstractPollJob extends Job {
 
 	public void setJobParameters(JobParameters jobParameters) {
 		this.jobParameters = jobParameters;
+		pollPeriod = -1;
 	}
 
 	public String getPollTime() {
@@ -60,12 +79,19 @@ public abstract class AbstractPollJob extends Job {
 
 	public void setJobParametersFilename(String fileName) throws IOException {
 		jobParameters = new JobParameters(fileName);
+		pollPeriod = -1;
 	}
 
 	public String getJobParametersFilename() {
 		return jobParameters.getParameterFile().getAbsolutePath();
 	}
 
+	/**
+	 * Release any resources held by job once it has been removed from the poll server
+	 */
+	public void dispose() {
+	}
+
 	public String getStatus() {
 		return status;
 	}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2012 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package uk.ac.diamond.sda.polling.jobs;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches drop files of filename reader jobs and tells the jobs as soon as their file
+ * is created or modified. One watch service thread serves all jobs and each directory
+ * holding drop files is registered once.
+ * <p>
+ * Note that some network file systems do not report changes made on other machines, so
+ * jobs that read from those should keep polling.
+ */
+public class DropFileWatcher implements Runnable {
+
+	private static DropFileWatcher instance = null;
+
+	private WatchService watchService = null;
+	private Map<Path, WatchKey> directoryKeys = new HashMap<>();
+	private Map<Path, Set<FilenameReaderJob>> listeners = new HashMap<>();
+	private Map<FilenameReaderJob, Path> jobFiles = new HashMap<>();
+
+	public static synchronized DropFileWatcher getInstance() {
+		if (instance == null) {
+			instance = new DropFileWatcher();
+		}
+		return instance;
+	}
+
+	private DropFileWatcher() {
+	}
+
+	/**
+	 * Tell job when given file changes. A job can watch one file at a time
+	 * @param file
+	 * @param job
+	 * @throws IOException if file's directory cannot be watched
+	 */
+	public synchronized void register(Path file, FilenameReaderJob job) throws IOException {
+		unregister(job);
+
+		file = file.toAbsolutePath().normalize();
+		Path dir = file.getParent();
+		if (!directoryKeys.containsKey(dir)) {
+			if (watchService == null) {
+				watchService = FileSystems.getDefault().newWatchService();
+				Thread thread = new Thread(this, "Drop file watcher");
+				thread.setDaemon(true);
+				thread.start();
+			}
+			directoryKeys.put(dir, dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY));
+		}
+
+		Set<FilenameReaderJob> jobs = listeners.get(file);
+		if (jobs == null) {
+			jobs = new HashSet<>();
+			listeners.put(file, jobs);
+		}
+		jobs.add(job);
+		jobFiles.put(job, file);
+	}
+
+	/**
+	 * Stop telling job about changes
+	 * @param job
+	 */
+	public synchronized void unregister(FilenameReaderJob job) {
+		Path file = jobFiles.remove(job);
+		if (file == null)
+			return;
+
+		Set<FilenameReaderJob> jobs = listeners.get(file);
+		jobs.remove(job);
+		if (!jobs.isEmpty())
+			return;
+		listeners.remove(file);
+
+		Path dir = file.getParent();
+		for (Path f : listeners.keySet()) {
+			if (dir.equals(f.getParent()))
+				return;
+		}
+		WatchKey key = directoryKeys.remove(dir);
+		if (key != null)
+			key.cancel();
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			Path dir = (Path) key.watchable();
+			List<FilenameReaderJob> changed = new ArrayList<>();
+			synchronized (this) {
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						// events were lost so tell everyone in directory
+						for (Path f : listeners.keySet()) {
+							if (dir.equals(f.getParent()))
+								changed.addAll(listeners.get(f));
+						}
+						continue;
+					}
+					Set<FilenameReaderJob> jobs = listeners.get(dir.resolve((Path) event.context()));
+					if (jobs != null)
+						changed.addAll(jobs);
+				}
+			}
+			key.reset();
+
+			for (FilenameReaderJob job : changed) {
+				job.dropFileChanged();
+			}
+		}
+	}
+}
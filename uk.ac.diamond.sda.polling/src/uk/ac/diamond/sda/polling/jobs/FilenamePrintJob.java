@@ -19,7 +19,8 @@ public class FilenamePrintJob extends FilenameReaderJob {
 
 	@Override
 	protected void processFile(ArrayList<String> filenames) {
-		for (String filename : filenames) {
+		// only files appended since the last read need processing
+		for (String filename : getNewFilenames()) {
 			System.out.println("Filename which needs processing is " + filename);
 		}	
 	}
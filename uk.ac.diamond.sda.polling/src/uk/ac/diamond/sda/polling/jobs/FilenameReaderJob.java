@@ -9,13 +9,16 @@
 
 package uk.ac.diamond.sda.polling.jobs;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -23,9 +26,32 @@ import org.eclipse.core.runtime.Status;
 
 import uk.ac.diamond.sda.polling.Activator;
 
+/**
+ * Reads a list of filenames from a drop file, one per line, and passes them on for processing.
+ * <p>
+ * The drop file is read incrementally: only lines appended since the last read are parsed
+ * and the whole file is only read again if it has been truncated or replaced. A last line
+ * without a line end may still be being written, so it is held back until its line end
+ * arrives or the file has not grown by the next read. With the
+ * parameter Trigger=Watch, the job also runs as soon as the drop file changes and the
+ * file is not looked at between changes. Otherwise it is checked every poll time.
+ */
 public abstract class FilenameReaderJob extends AbstractPollJob {
-	
+
 	public static final String FILE_NAME = "FileName";
+	public static final String TRIGGER = "Trigger";
+	public static final String TRIGGER_WATCH = "Watch";
+
+	private ArrayList<String> filenames = new ArrayList<String>();
+	private int newFilesStart = 0;
+	private File dropFile = null;
+	private Object dropFileKey = null;
+	private long offset = 0; // end of last complete line read
+	private long readSize = 0;
+	private String heldLine = null; // unterminated last line
+	private File watchedFile = null; // null when polling
+	private File unwatchableFile = null;
+	private volatile boolean dropFileChanged = true;
 
 	public FilenameReaderJob() {
 		super("Filename Reader Job");
@@ -33,37 +59,177 @@ public abstract class FilenameReaderJob extends AbstractPollJob {
 
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
-		
+
 		try {
-			File file = new File(getJobParameters().get(FILE_NAME));
-			FileInputStream fin = new FileInputStream(file);
-			BufferedInputStream bis = new BufferedInputStream(fin);
-			BufferedReader br = new BufferedReader(new InputStreamReader(bis));
-			
-			ArrayList<String> filenames = new ArrayList<String>();
-			
-			String filename = br.readLine();
-			// if there is nothing there, throw an exception here to let the user know
-			if(filename == null) {
-				throw new IOException("No File Specified in drop location");
-			}
-			
-			// otherwise try to load in all the image filenames
-			while(filename != null) {
-				filenames.add(filename);
-				filename = br.readLine();
-			}
-			
-			processFile(filenames);
-		
+			readDropFile();
+			processFile(getFilenames());
 		} catch (Exception e) {
 			setStatus(e.getLocalizedMessage());
 			return new Status(IStatus.INFO, Activator.PLUGIN_ID, e.getLocalizedMessage());
 		}
-		
+
 		setStatus("OK");
 		return Status.OK_STATUS;
-		
+
+	}
+
+	/**
+	 * Bring list of filenames up to date with drop file
+	 * @return true if list has changed since last read
+	 * @throws IOException if drop file cannot be read or is empty
+	 */
+	protected boolean readDropFile() throws IOException {
+		File file = new File(getJobParameters().get(FILE_NAME));
+		if (!file.equals(dropFile)) {
+			dropFile = file;
+			dropFileKey = null;
+			dropFileChanged = true;
+		}
+		updateWatch();
+
+		boolean changed = false;
+		if (watchedFile == null || dropFileChanged || heldLine != null) {
+			dropFileChanged = false;
+			changed = readAppendedLines();
+		} else {
+			newFilesStart = filenames.size();
+		}
+
+		// if there is nothing there, throw an exception here to let the user know
+		if (filenames.isEmpty()) {
+			throw new IOException("No File Specified in drop location");
+		}
+		return changed;
+	}
+
+	private boolean readAppendedLines() throws IOException {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(dropFile.toPath(), BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(dropFile.getPath() + " (No such file or directory)");
+		}
+		long size = attrs.size();
+		Object key = attrs.fileKey();
+
+		ArrayList<String> oldFilenames = null;
+		if (size < readSize || (key != null && !key.equals(dropFileKey))) {
+			// truncated or replaced so start again
+			oldFilenames = filenames;
+			filenames = new ArrayList<String>();
+			offset = 0;
+			readSize = 0;
+			heldLine = null;
+			dropFileKey = key;
+		} else if (size == readSize) {
+			newFilesStart = filenames.size();
+			if (heldLine == null) {
+				return false;
+			}
+			// file has stopped growing so take unterminated line as complete
+			filenames.add(heldLine);
+			heldLine = null;
+			offset = readSize;
+			return true;
+		}
+
+		heldLine = null; // read it again as it may be complete now
+		int start = filenames.size();
+
+		byte[] bytes;
+		RandomAccessFile raf = new RandomAccessFile(dropFile, "r");
+		try {
+			size = raf.length();
+			bytes = new byte[(int) Math.max(0, size - offset)];
+			raf.seek(offset);
+			raf.readFully(bytes);
+			readSize = size;
+		} finally {
+			raf.close();
+		}
+
+		Charset charset = Charset.defaultCharset();
+		int begin = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] == '\n') {
+				int end = i > begin && bytes[i - 1] == '\r' ? i - 1 : i;
+				filenames.add(new String(bytes, begin, end - begin, charset));
+				begin = i + 1;
+			}
+		}
+		offset += begin;
+		if (begin < bytes.length) { // last line may still be being written
+			heldLine = new String(bytes, begin, bytes.length - begin, charset);
+		}
+
+		if (oldFilenames != null) {
+			if (heldLine != null && oldFilenames.size() == filenames.size() + 1
+					&& heldLine.equals(oldFilenames.get(filenames.size()))
+					&& oldFilenames.subList(0, filenames.size()).equals(filenames)) {
+				// old unterminated line was already passed on
+				filenames.add(heldLine);
+				heldLine = null;
+				offset = readSize;
+			}
+			if (oldFilenames.equals(filenames)) { // rewritten with same contents
+				newFilesStart = filenames.size();
+				return false;
+			}
+			newFilesStart = 0;
+			return true;
+		}
+		newFilesStart = start;
+		return filenames.size() > start;
+	}
+
+	private void updateWatch() {
+		boolean watch = TRIGGER_WATCH.equalsIgnoreCase(getJobParameters().get(TRIGGER));
+		File target = watch && !dropFile.equals(unwatchableFile) ? dropFile : null;
+		if (target == null ? watchedFile == null : target.equals(watchedFile))
+			return;
+
+		DropFileWatcher.getInstance().unregister(this);
+		watchedFile = null;
+		if (target != null) {
+			try {
+				DropFileWatcher.getInstance().register(target.toPath(), this);
+				watchedFile = target;
+			} catch (IOException e) {
+				// carry on polling
+				e.printStackTrace();
+				unwatchableFile = target;
+			}
+		}
+		dropFileChanged = true;
+	}
+
+	/**
+	 * Called when drop file has changed so job runs straight away
+	 */
+	void dropFileChanged() {
+		dropFileChanged = true;
+		schedule();
+	}
+
+	/**
+	 * @return all filenames in drop file
+	 */
+	protected ArrayList<String> getFilenames() {
+		return filenames;
+	}
+
+	/**
+	 * @return filenames added to drop file by last read. This is all of them if the
+	 * drop file was replaced
+	 */
+	protected List<String> getNewFilenames() {
+		return filenames.subList(newFilesStart, filenames.size());
+	}
+
+	@Override
+	public void dispose() {
+		DropFileWatcher.getInstance().unregister(this);
+		watchedFile = null;
 	}
 
 	protected abstract void processFile(ArrayList<String> filenames);
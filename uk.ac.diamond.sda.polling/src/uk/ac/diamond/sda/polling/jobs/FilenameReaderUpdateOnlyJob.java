@@ -9,53 +9,24 @@
 
 package uk.ac.diamond.sda.polling.jobs;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 
 import uk.ac.diamond.sda.polling.Activator;
 
+/**
+ * Filename reader that only processes the list of filenames when lines have been added
+ * to the drop file or it has been rewritten
+ */
 public abstract class FilenameReaderUpdateOnlyJob extends FilenameReaderJob {
 
-	ArrayList<String>  oldFilenames = new ArrayList<String>();
-	
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
 		try {
-			File file = new File(getJobParameters().get(FILE_NAME));
-			FileInputStream fin = new FileInputStream(file);
-			BufferedInputStream bis = new BufferedInputStream(fin);
-			BufferedReader br = new BufferedReader(new InputStreamReader(bis));
-			
-			ArrayList<String> filenames = new ArrayList<String>();
-			
-			String filename = br.readLine();
-			if(filename == null) {
-				throw new IOException("No File Specified in drop location");
-			}
-			
-			// otherwise try to load in all the image filenames
-			while(filename != null) {
-				filenames.add(filename);
-				filename = br.readLine();
+			if (readDropFile()) {
+				processFile(getFilenames());
 			}
-			
-			if(newFilesPresent(oldFilenames, filenames)) {
-				processFile(filenames);
-				oldFilenames.clear();
-				for (String string : filenames) {
-					oldFilenames.add(string);
-				}
-			}
-		
 		} catch (Exception e) {
 			setStatus(e.getLocalizedMessage());
 			return new Status(IStatus.INFO, Activator.PLUGIN_ID, e.getLocalizedMessage());
@@ -65,14 +36,4 @@ public abstract class FilenameReaderUpdateOnlyJob extends FilenameReaderJob {
 		return Status.OK_STATUS;
 	}
 
-	private boolean newFilesPresent(ArrayList<String> oldFilenames, ArrayList<String> filenames) {
-		if(oldFilenames.size() != filenames.size()) return true;
-		for(int i = 0; i < oldFilenames.size(); i++) {
-			if(filenames.get(i).compareTo(oldFilenames.get(i)) != 0) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 }
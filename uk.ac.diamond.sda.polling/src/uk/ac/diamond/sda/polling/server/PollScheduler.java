@@ -9,61 +9,152 @@
 
 package uk.ac.diamond.sda.polling.server;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
 import uk.ac.diamond.sda.polling.jobs.AbstractPollJob;
 
+/**
+ * Runs poll jobs when they are due. Each registered job has one entry in a delay queue
+ * ordered by its next poll time, so the scheduler thread sleeps until the earliest job
+ * is due and only that job is looked at. Adding a job that is due sooner wakes the
+ * scheduler straight away. Removed jobs have their entry cancelled and it is discarded
+ * when it comes off the queue.
+ */
 public class PollScheduler implements Runnable {
 
 	private static final int DEFAULT_MAXIMUM_POLL_TIME = 10000;
-	public static boolean SCHEDULER_RUNNING = false;
+	private static final int MINIMUM_POLL_TIME = 10;
+
+	private final DelayQueue<ScheduledPoll> queue = new DelayQueue<>();
+	private final Map<AbstractPollJob, ScheduledPoll> scheduled = new HashMap<>();
+	private volatile boolean running = true;
 	PollServer pollServer = null;
 
+	private static class ScheduledPoll implements Delayed {
+		final AbstractPollJob job;
+		final long time;
+		volatile boolean cancelled = false;
+
+		ScheduledPoll(AbstractPollJob job, long time) {
+			this.job = job;
+			this.time = time;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return Long.compare(time, ((ScheduledPoll) o).time);
+		}
+	}
+
 	public PollScheduler(PollServer pollServer) {
 		this.pollServer = pollServer;
 	}
 
-	@Override
 	/**
-	 * check all jobs, if the time till the next poll is negative 
-	 * run the job, if its positive then log it
-	 * Finally wait until the next step
+	 * Register job to be run at its next poll time, replacing any earlier registration
+	 * @param job
 	 */
-	public void run() {
-
-		SCHEDULER_RUNNING = true;
-
-		// TODO should make this easily killable
-		while (SCHEDULER_RUNNING) {
+	public synchronized void add(AbstractPollJob job) {
+		long time;
+		try {
+			time = job.getNextPollTime();
+		} catch (RuntimeException e) {
+			// bad poll time, so try again later in case the parameter file is fixed
+			e.printStackTrace();
+			time = System.currentTimeMillis() + DEFAULT_MAXIMUM_POLL_TIME;
+		}
+		add(job, time);
+	}
 
-			pollServer.pollMonitor.pollLoopStart();
-			long timeTillNextJob = processAllJobs();
+	private synchronized void add(AbstractPollJob job, long time) {
+		ScheduledPoll old = scheduled.get(job);
+		if (old != null)
+			old.cancelled = true;
+		ScheduledPoll poll = new ScheduledPoll(job, time);
+		scheduled.put(job, poll);
+		queue.add(poll);
+	}
 
-			try {
-				Thread.sleep(timeTillNextJob);
-			} catch (InterruptedException e) {
-				// Kill the loop and carry on
-				continue;
-			}
+	/**
+	 * Stop running given job
+	 * @param job
+	 */
+	public synchronized void remove(AbstractPollJob job) {
+		ScheduledPoll poll = scheduled.remove(job);
+		if (poll != null)
+			poll.cancelled = true;
+	}
 
+	/**
+	 * Stop running all jobs
+	 */
+	public synchronized void clear() {
+		for (ScheduledPoll poll : scheduled.values()) {
+			poll.cancelled = true;
 		}
+		scheduled.clear();
+		queue.clear();
 	}
 
-	private long processAllJobs() {
+	/**
+	 * Make scheduler thread finish
+	 */
+	public void stop() {
+		running = false;
+		queue.add(new ScheduledPoll(null, 0)); // wake up thread
+	}
+
+	@Override
+	/**
+	 * Wait for the next job to be due, run it and register its next poll time
+	 */
+	public void run() {
 
-		pollServer.pollMonitor.processingJobs();
+		while (running) {
 
-		long timeTillNextJob = DEFAULT_MAXIMUM_POLL_TIME;
+			ScheduledPoll poll;
+			try {
+				poll = queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (!running)
+				break;
+			if (poll.job == null || poll.cancelled)
+				continue;
 
-		for (AbstractPollJob pollJob : this.pollServer.getPollJobs()) {
-			pollServer.pollMonitor.schedulingJob(pollJob);
+			pollServer.pollMonitor.pollLoopStart();
+			pollServer.pollMonitor.processingJobs();
+			pollServer.pollMonitor.schedulingJob(poll.job);
 
-			long timeTillNextEvent = pollJob.timeToSchedule();
+			long now = System.currentTimeMillis();
+			long next;
+			try {
+				next = poll.job.poll();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				next = now + DEFAULT_MAXIMUM_POLL_TIME;
+			}
+			next = Math.max(next, now + MINIMUM_POLL_TIME);
 
-			if (timeTillNextEvent > 0 && timeTillNextEvent < timeTillNextJob) {
-				timeTillNextJob = timeTillNextEvent;
+			synchronized (this) {
+				if (scheduled.get(poll.job) == poll)
+					add(poll.job, next);
 			}
+
+			ScheduledPoll head = queue.peek();
+			pollServer.pollMonitor.processingJobsComplete(head == null ? DEFAULT_MAXIMUM_POLL_TIME
+					: Math.max(0, head.getDelay(TimeUnit.MILLISECONDS)));
 		}
-		pollServer.pollMonitor.processingJobsComplete(timeTillNextJob);
-		return timeTillNextJob;
 	}
 
 }
@@ -43,6 +43,8 @@ public class PollServer implements IPropertyChangeListener {
 
 	private static Thread schedulerThread = null;
 
+	private PollScheduler pollScheduler = null;
+
 	private Collection<AbstractPollJob> pollJobs = new ArrayList<AbstractPollJob>();
 
 	private File pollFileDirectory;
@@ -77,7 +79,11 @@ public class PollServer implements IPropertyChangeListener {
 	}
 
 	private void clearAllJobs() {
+		for (AbstractPollJob job : pollJobs) {
+			job.dispose();
+		}
 		pollJobs.clear();
+		pollScheduler.clear();
 	}
 
 	public void setPollMonitor(IPollMonitor pollMonitor) {
@@ -89,6 +95,7 @@ public class PollServer implements IPropertyChangeListener {
 
 		// need to associate this with a
 		pollJobs.add(job);
+		pollScheduler.add(job);
 	}
 
 	public void runSheduler() {
@@ -97,14 +104,17 @@ public class PollServer implements IPropertyChangeListener {
 		} catch (InterruptedException e) {
 			// Do nothing, it just means this may leave a thread lying around for a bit until it dies
 		}
-		schedulerThread = new Thread(new PollScheduler(this));
-		PollScheduler.SCHEDULER_RUNNING = true;
+		pollScheduler = new PollScheduler(this);
+		for (AbstractPollJob job : pollJobs) {
+			pollScheduler.add(job);
+		}
+		schedulerThread = new Thread(pollScheduler);
 		schedulerThread.start();
 	}
 
 	public void stopSheduler() throws InterruptedException {
 		if (schedulerThread != null) {
-			PollScheduler.SCHEDULER_RUNNING = false;
+			pollScheduler.stop();
 			schedulerThread.join();
 		}
 
@@ -239,6 +249,8 @@ public class PollServer implements IPropertyChangeListener {
 
 	public void removeJob(AbstractPollJob job) {
 		pollJobs.remove(job);
+		pollScheduler.remove(job);
+		job.dispose();
 		deleteFile(job);
 	}
 
@@ -250,14 +262,17 @@ public class PollServer implements IPropertyChangeListener {
 	public void removeAllJobs() {
 		for (AbstractPollJob job : pollJobs) {
 			deleteFile(job);
+			job.dispose();
 		}
 
 		pollJobs.clear();
+		pollScheduler.clear();
 	}
 
 	public void shutdown() throws InterruptedException {
 
 		stopSheduler();
+		pollScheduler.clear();
 
 		boolean finished = false;
 		while (!finished) {
@@ -271,6 +286,10 @@ public class PollServer implements IPropertyChangeListener {
 			}
 		}
 
+		for (AbstractPollJob job : pollJobs) {
+			job.dispose();
+		}
+
 		pollJobs.clear();
 	}
 }